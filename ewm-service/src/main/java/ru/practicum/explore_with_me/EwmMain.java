@@ -3,9 +3,11 @@ package ru.practicum.explore_with_me;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = {"ru.practicum.explore_with_me"})
 @Import({WebClientService.class})
+@EnableScheduling
 public class EwmMain {
     public static void main(String[] args) {
         SpringApplication.run(EwmMain.class, args);
@@ -8,7 +8,9 @@ import ru.practicum.explore_with_me.dto.event.EventFullDto;
 import ru.practicum.explore_with_me.dto.event.UpdateEventAdminRequest;
 import ru.practicum.explore_with_me.model.EventState;
 import ru.practicum.explore_with_me.service.event.EventService;
+import ru.practicum.explore_with_me.util.EventCursor;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
@@ -31,12 +33,19 @@ public class EventAdminController {
                                                 @RequestParam(required = false) LocalDateTime rangeEnd,
                                                 @RequestParam(required = false, defaultValue = "") String text,
                                                 @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
-                                                @Positive @RequestParam(defaultValue = "10") Integer size) {
+                                                @Positive @RequestParam(defaultValue = "10") Integer size,
+                                                @RequestParam(required = false) String cursor,
+                                                HttpServletResponse httpServletResponse) {
         log.info("GET /admin/events users={},states={},categories={},\nrangeStart={},rangeEnd={}" +
-                ",from={},size={}", users, states, categories, rangeStart, rangeEnd, from, size);
+                ",from={},size={},cursor={}", users, states, categories, rangeStart, rangeEnd, from, size, cursor);
 
-        return eventService.getEventsForAdmin(users, states, categories,
-                rangeStart, rangeEnd, text, from, size);
+        List<EventFullDto> result = eventService.getEventsForAdmin(users, states, categories,
+                rangeStart, rangeEnd, text, from, size, cursor);
+        if (result.size() == size) {
+            httpServletResponse.setHeader(EventCursor.NEXT_CURSOR_HEADER,
+                    EventCursor.of(result.get(result.size() - 1).getId()).encode());
+        }
+        return result;
     }
 
     @PatchMapping("/{eventId}/publish")
@@ -6,9 +6,15 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.explore_with_me.dto.event.EventFullDto;
 import ru.practicum.explore_with_me.dto.event.EventShortDto;
+import ru.practicum.explore_with_me.dto.filter.EventFilter;
+import ru.practicum.explore_with_me.dto.filter.GeoFilter;
+import ru.practicum.explore_with_me.model.EventSort;
+import ru.practicum.explore_with_me.model.SearchMode;
 import ru.practicum.explore_with_me.service.event.EventService;
+import ru.practicum.explore_with_me.util.EventCursor;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
 import java.time.LocalDateTime;
@@ -24,6 +30,7 @@ public class EventPublicController {
 
     @GetMapping
     public List<EventShortDto> findByFilter(HttpServletRequest httpServletRequest,
+                                            HttpServletResponse httpServletResponse,
                                             @RequestParam(name = "text", defaultValue = "") String text,
                                             @RequestParam(name = "categories", required = false) List<Long> categories,
                                             @RequestParam(name = "paid", required = false) Boolean paid,
@@ -34,10 +41,64 @@ public class EventPublicController {
                                             @RequestParam(name = "onlyAvailable", defaultValue = "false")
                                             boolean onlyAvailable,
                                             @RequestParam(name = "sort", defaultValue = "EVENT_DATE") String sort,
+                                            @RequestParam(name = "searchMode", defaultValue = "LIKE")
+                                            SearchMode searchMode,
                                             @RequestParam(name = "from", defaultValue = "0") @PositiveOrZero int from,
-                                            @RequestParam(name = "size", defaultValue = "10") @Positive int size) {
-        return eventService.getEventsForAll(text, categories, paid, rangeStart, rangeEnd,
-                onlyAvailable, sort, from, size, httpServletRequest);
+                                            @RequestParam(name = "size", defaultValue = "10") @Positive int size,
+                                            @RequestParam(name = "cursor", required = false) String cursor) {
+        EventSort eventSort = EventSort.from(sort);
+        List<EventShortDto> result = eventService.getEventsForAll(text, categories, paid, rangeStart, rangeEnd,
+                onlyAvailable, eventSort, searchMode, from, size, cursor, httpServletRequest);
+        if (result.size() == size) {
+            EventShortDto last = result.get(result.size() - 1);
+            if (eventSort == EventSort.EVENT_DATE) {
+                httpServletResponse.setHeader(EventCursor.NEXT_CURSOR_HEADER,
+                        EventCursor.byEventDate(last.getEventDate(), last.getId()).encode());
+            } else if (eventSort == EventSort.VIEWS) {
+                httpServletResponse.setHeader(EventCursor.NEXT_CURSOR_HEADER,
+                        EventCursor.byViews(last.getViews(), last.getId()).encode());
+            }
+        }
+        return result;
+    }
+
+    @GetMapping("/nearby")
+    public List<EventShortDto> findNearby(HttpServletRequest httpServletRequest,
+                                          @RequestParam(name = "lat", required = false) Double lat,
+                                          @RequestParam(name = "lon", required = false) Double lon,
+                                          @RequestParam(name = "radius", required = false) Double radius,
+                                          @RequestParam(name = "minLat", required = false) Double minLat,
+                                          @RequestParam(name = "maxLat", required = false) Double maxLat,
+                                          @RequestParam(name = "minLon", required = false) Double minLon,
+                                          @RequestParam(name = "maxLon", required = false) Double maxLon,
+                                          @RequestParam(name = "text", defaultValue = "") String text,
+                                          @RequestParam(name = "searchMode", defaultValue = "LIKE")
+                                          SearchMode searchMode,
+                                          @RequestParam(name = "categories", required = false) List<Long> categories,
+                                          @RequestParam(name = "paid", required = false) Boolean paid,
+                                          @RequestParam(name = "rangeStart", required = false)
+                                          LocalDateTime rangeStart,
+                                          @RequestParam(name = "rangeEnd", required = false)
+                                          LocalDateTime rangeEnd,
+                                          @RequestParam(name = "from", defaultValue = "0") @PositiveOrZero int from,
+                                          @RequestParam(name = "size", defaultValue = "10") @Positive int size) {
+        GeoFilter geoFilter = GeoFilter.builder()
+                .lat(lat)
+                .lon(lon)
+                .radius(radius)
+                .minLat(minLat)
+                .maxLat(maxLat)
+                .minLon(minLon)
+                .maxLon(maxLon)
+                .build();
+        EventFilter eventFilter = EventFilter.builder()
+                .text(text)
+                .categories(categories)
+                .paid(paid)
+                .rangeStart(rangeStart)
+                .rangeEnd(rangeEnd)
+                .build();
+        return eventService.getEventsNearby(geoFilter, eventFilter, searchMode, from, size, httpServletRequest);
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,12 @@
+package ru.practicum.explore_with_me.dto.compilation;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompilationEvent {
+    private Long compilationId;
+    private Long eventId;
+}
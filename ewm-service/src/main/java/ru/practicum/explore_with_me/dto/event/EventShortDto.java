@@ -1,5 +1,6 @@
 package ru.practicum.explore_with_me.dto.event;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import ru.practicum.explore_with_me.dto.category.CategoryDto;
 import ru.practicum.explore_with_me.dto.user.UserShortDto;
@@ -22,5 +23,21 @@ public class EventShortDto {
     private Integer confirmedRequests;
     private Integer views;
     private Long comments;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double distance;
 
+    /**
+     * Конструктор для проекции запроса: только колонки краткого представления события.
+     */
+    public EventShortDto(Long id, String annotation, Long categoryId, String categoryName, LocalDateTime eventDate,
+                         Long initiatorId, String initiatorName, Boolean paid, String title, Integer views) {
+        this.id = id;
+        this.annotation = annotation;
+        this.category = new CategoryDto(categoryId, categoryName);
+        this.eventDate = eventDate;
+        this.initiator = new UserShortDto(initiatorId, initiatorName);
+        this.paid = paid;
+        this.title = title;
+        this.views = views;
+    }
 }
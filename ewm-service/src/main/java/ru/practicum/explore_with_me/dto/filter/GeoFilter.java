@@ -0,0 +1,18 @@
+package ru.practicum.explore_with_me.dto.filter;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GeoFilter {
+    private Double lat;
+    private Double lon;
+    private Double radius;
+    private Double minLat;
+    private Double maxLat;
+    private Double minLon;
+    private Double maxLon;
+}
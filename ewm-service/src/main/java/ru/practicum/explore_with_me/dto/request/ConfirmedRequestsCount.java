@@ -0,0 +1,12 @@
+package ru.practicum.explore_with_me.dto.request;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfirmedRequestsCount {
+    private Long eventId;
+    private Long count;
+}
@@ -0,0 +1,11 @@
+package ru.practicum.explore_with_me.exception;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class EnrichmentException extends RuntimeException {
+    public EnrichmentException(String message) {
+        super(message);
+        log.error(message);
+    }
+}
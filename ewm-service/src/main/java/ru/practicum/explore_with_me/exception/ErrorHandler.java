@@ -74,6 +74,36 @@ public class ErrorHandler {
         return apiError;
     }
 
+    @ExceptionHandler(InvalidSortException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiError handleInvalidSortException(final InvalidSortException ex) {
+        log.error("Ошибка 400 (InvalidSortException) {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(),
+                "Запрашиваемая операция не может быть выполнена",
+                HttpStatus.BAD_REQUEST);
+        return apiError;
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiError handleInvalidCursorException(final InvalidCursorException ex) {
+        log.error("Ошибка 400 (InvalidCursorException) {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(),
+                "Запрашиваемая операция не может быть выполнена",
+                HttpStatus.BAD_REQUEST);
+        return apiError;
+    }
+
+    @ExceptionHandler(InvalidLocationException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiError handleInvalidLocationException(final InvalidLocationException ex) {
+        log.error("Ошибка 400 (InvalidLocationException) {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(),
+                "Запрашиваемая операция не может быть выполнена",
+                HttpStatus.BAD_REQUEST);
+        return apiError;
+    }
+
     @ExceptionHandler(StatsException.class)
     @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
     public ApiError handleStatsException(final StatsException ex) {
@@ -84,6 +114,16 @@ public class ErrorHandler {
         return apiError;
     }
 
+    @ExceptionHandler(EnrichmentException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ApiError handleEnrichmentException(final EnrichmentException ex) {
+        log.error("Ошибка 503 (EnrichmentException) {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(),
+                "Запрашиваемая операция не может быть выполнена",
+                HttpStatus.SERVICE_UNAVAILABLE);
+        return apiError;
+    }
+
     @ExceptionHandler(BadHttpMessageNotReadableException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiError handleBadHttpMessageNotReadableException(final BadHttpMessageNotReadableException ex) {
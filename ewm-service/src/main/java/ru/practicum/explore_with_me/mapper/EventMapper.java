@@ -14,6 +14,8 @@ public interface EventMapper {
 
     EventShortDto mapToShortDto(Event event);
 
+    @Mapping(target = "indexedViews", ignore = true)
+    @Mapping(target = "distance", ignore = true)
     Event mapFromNewToModel(NewEventDto newEventDto);
 
     @Mapping(source = "integer", target = "views")
@@ -51,10 +51,14 @@ public class Event {
     private EventState eventState;
     @Column(name = "title", nullable = false)
     private String title;
+    @Column(name = "indexed_views", insertable = false, updatable = false)
+    private Integer indexedViews;
     @Transient
     private Integer confirmedRequests;
     @Transient
     private Integer views;
     @Transient
     private Long comments;
+    @Transient
+    private Double distance;
 }
@@ -0,0 +1,24 @@
+package ru.practicum.explore_with_me.model;
+
+import ru.practicum.explore_with_me.exception.InvalidSortException;
+
+public enum EventSort {
+    EVENT_DATE,
+    VIEWS,
+    RELEVANCE;
+
+    /**
+     * Сортировка из параметра sort без учёта регистра; пустой параметр означает сортировку по дате события.
+     */
+    public static EventSort from(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return EVENT_DATE;
+        }
+        for (EventSort value : values()) {
+            if (value.name().equalsIgnoreCase(sort)) {
+                return value;
+            }
+        }
+        throw new InvalidSortException(String.format("Не корректный параметр сортировки = %s", sort));
+    }
+}
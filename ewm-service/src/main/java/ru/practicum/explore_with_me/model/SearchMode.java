@@ -0,0 +1,6 @@
+package ru.practicum.explore_with_me.model;
+
+public enum SearchMode {
+    LIKE,
+    FULLTEXT
+}
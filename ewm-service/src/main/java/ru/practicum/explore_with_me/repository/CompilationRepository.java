@@ -3,6 +3,8 @@ package ru.practicum.explore_with_me.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.explore_with_me.dto.compilation.CompilationEvent;
 import ru.practicum.explore_with_me.model.Compilation;
 
 import java.util.List;
@@ -12,4 +14,7 @@ public interface CompilationRepository extends JpaRepository<Compilation, Long>
 
     Page<Compilation> findAll(Pageable pageable);
 
+    @Query("select new ru.practicum.explore_with_me.dto.compilation.CompilationEvent(c.id, e.id)" +
+            " from Compilation c join c.events e where c.id in ?1")
+    List<CompilationEvent> findCompilationEvents(List<Long> compilationIds);
 }
\ No newline at end of file
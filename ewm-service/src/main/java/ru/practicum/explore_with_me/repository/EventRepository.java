@@ -3,10 +3,50 @@ package ru.practicum.explore_with_me.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import ru.practicum.explore_with_me.model.Event;
 
-public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event> {
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event>,
+        EventRepositoryCustom {
     Page<Event> findAll(Pageable pageable);
 
+    @Query(value = "select confirmed_requests from events where event_id = ?1", nativeQuery = true)
+    int getConfirmedRequests(Long eventId);
+
+    @Modifying
+    @Query(value = "update events set confirmed_requests = confirmed_requests + 1 " +
+            "where event_id = ?1 and (participant_limit = 0 or confirmed_requests < participant_limit)",
+            nativeQuery = true)
+    int incrementConfirmedRequests(Long eventId);
+
+    @Query(value = "select confirmed_requests from events where event_id = ?1 for update", nativeQuery = true)
+    int lockConfirmedRequests(Long eventId);
+
+    @Modifying
+    @Query(value = "update events set confirmed_requests = confirmed_requests + ?2 where event_id = ?1",
+            nativeQuery = true)
+    int addConfirmedRequests(Long eventId, int count);
+
+    @Modifying
+    @Query(value = "update events set confirmed_requests = confirmed_requests - 1 " +
+            "where event_id = ?1 and confirmed_requests > 0", nativeQuery = true)
+    int decrementConfirmedRequests(Long eventId);
+
+    @Query(value = "select e.event_id from events e " +
+            "where e.event_date >= ?1 and e.confirmed_requests <> (select count(*) from requests r " +
+            "where r.event_id = e.event_id and r.status = 'CONFIRMED')", nativeQuery = true)
+    List<Long> findEventsWithConfirmedRequestsDrift(LocalDateTime eventDateFrom);
+
+    @Query(value = "select event_id from events where event_id = ?1 for update", nativeQuery = true)
+    Long lockEvent(Long eventId);
+
+    @Modifying
+    @Query(value = "update events e set confirmed_requests = (select count(*) from requests r " +
+            "where r.event_id = e.event_id and r.status = 'CONFIRMED') where e.event_id = ?1", nativeQuery = true)
+    int recountConfirmedRequests(Long eventId);
 }
@@ -0,0 +1,27 @@
+package ru.practicum.explore_with_me.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+import ru.practicum.explore_with_me.dto.event.EventShortDto;
+import ru.practicum.explore_with_me.model.Event;
+
+import java.util.List;
+
+public interface EventRepositoryCustom {
+    /**
+     * Страница событий без подсчёта общего числа строк. Категория и инициатор загружаются тем же запросом.
+     */
+    List<Event> findEvents(Predicate predicate, long offset, int limit, OrderSpecifier<?>... orders);
+
+    /**
+     * Страница событий сразу в кратком представлении: читаются только нужные колонки, сущности не создаются.
+     * В views записывается значение индекса просмотров.
+     */
+    List<EventShortDto> findEventShorts(Predicate predicate, long offset, int limit, OrderSpecifier<?>... orders);
+
+    /**
+     * Страница событий по возрастанию расстояния; расстояние записывается в Event.distance.
+     */
+    List<Event> findEventsByDistance(Predicate predicate, NumberExpression<Double> distance, long offset, int limit);
+}
@@ -0,0 +1,76 @@
+package ru.practicum.explore_with_me.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import ru.practicum.explore_with_me.dto.event.EventShortDto;
+import ru.practicum.explore_with_me.model.Event;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.practicum.explore_with_me.model.QCategory.category;
+import static ru.practicum.explore_with_me.model.QEvent.event;
+import static ru.practicum.explore_with_me.model.QUser.user;
+
+public class EventRepositoryImpl implements EventRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Event> findEvents(Predicate predicate, long offset, int limit, OrderSpecifier<?>... orders) {
+        return new JPAQueryFactory(entityManager)
+                .selectFrom(event)
+                .join(event.category).fetchJoin()
+                .join(event.initiator).fetchJoin()
+                .where(predicate)
+                .orderBy(orders)
+                .offset(offset)
+                .limit(limit)
+                .fetch();
+    }
+
+    @Override
+    public List<EventShortDto> findEventShorts(Predicate predicate, long offset, int limit,
+                                               OrderSpecifier<?>... orders) {
+        return new JPAQueryFactory(entityManager)
+                .select(Projections.constructor(EventShortDto.class, event.id, event.annotation, category.id,
+                        category.name, event.eventDate, user.id, user.name, event.paid, event.title,
+                        event.indexedViews))
+                .from(event)
+                .join(event.category, category)
+                .join(event.initiator, user)
+                .where(predicate)
+                .orderBy(orders)
+                .offset(offset)
+                .limit(limit)
+                .fetch();
+    }
+
+    @Override
+    public List<Event> findEventsByDistance(Predicate predicate, NumberExpression<Double> distance, long offset,
+                                            int limit) {
+        List<Tuple> rows = new JPAQueryFactory(entityManager)
+                .select(event, distance)
+                .from(event)
+                .join(event.category).fetchJoin()
+                .join(event.initiator).fetchJoin()
+                .where(predicate)
+                .orderBy(distance.asc(), event.id.asc())
+                .offset(offset)
+                .limit(limit)
+                .fetch();
+        List<Event> events = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Event found = row.get(event);
+            found.setDistance(row.get(distance));
+            events.add(found);
+        }
+        return events;
+    }
+}
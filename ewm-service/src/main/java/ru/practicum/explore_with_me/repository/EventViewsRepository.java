@@ -0,0 +1,31 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class EventViewsRepository {
+    private static final String UPDATE_VIEWS = "update events set indexed_views = ? "
+            + "where event_id = ? and indexed_views <> ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Записывает просмотры событий в индекс одним пакетом; строки с неизменившимся значением не переписываются.
+     */
+    public int updateIndexedViews(Map<Long, Integer> views) {
+        List<Object[]> args = new ArrayList<>(views.size());
+        views.forEach((eventId, hits) -> args.add(new Object[]{hits, eventId, hits}));
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(UPDATE_VIEWS, args)) {
+            updated += Math.max(count, 0);
+        }
+        return updated;
+    }
+}
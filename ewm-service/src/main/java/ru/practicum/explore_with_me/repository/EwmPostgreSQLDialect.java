@@ -0,0 +1,27 @@
+package ru.practicum.explore_with_me.repository;
+
+import org.hibernate.dialect.PostgreSQL10Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Диалект с функциями полнотекстового поиска и расстояния для событий.
+ * Выражение to_tsvector совпадает с выражением индекса idx_events_fts, поэтому поиск идёт по GIN-индексу.
+ */
+public class EwmPostgreSQLDialect extends PostgreSQL10Dialect {
+    private static final String EVENT_TS_VECTOR = "to_tsvector('russian', ?1 || ' ' || ?2)";
+    private static final String EVENT_TS_QUERY = "websearch_to_tsquery('russian', ?3)";
+    // geo_distance(lat, lon, centerLat, centerLon, cos(centerLat)): параметры запроса встречаются в шаблоне
+    // по одному разу и в порядке аргументов, иначе Hibernate свяжет значения не с теми плейсхолдерами
+    private static final String HAVERSINE_KM = "(12742.0 * asin(sqrt(power(sin(radians(?3 - ?1) / 2), 2) "
+            + "+ power(sin(radians(?4 - ?2) / 2), 2) * cos(radians(?1)) * ?5)))";
+
+    public EwmPostgreSQLDialect() {
+        super();
+        registerFunction("fts_match", new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN,
+                "(" + EVENT_TS_VECTOR + " @@ " + EVENT_TS_QUERY + ")"));
+        registerFunction("fts_rank", new SQLFunctionTemplate(StandardBasicTypes.FLOAT,
+                "ts_rank(" + EVENT_TS_VECTOR + ", " + EVENT_TS_QUERY + ")"));
+        registerFunction("geo_distance", new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, HAVERSINE_KM));
+    }
+}
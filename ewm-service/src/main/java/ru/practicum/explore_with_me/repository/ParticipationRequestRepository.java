@@ -1,8 +1,11 @@
 package ru.practicum.explore_with_me.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import ru.practicum.explore_with_me.dto.request.ConfirmedRequestsCount;
 import ru.practicum.explore_with_me.model.ParticipationRequest;
+import ru.practicum.explore_with_me.model.StatusRequest;
 
 import java.util.List;
 
@@ -14,13 +17,21 @@ public interface ParticipationRequestRepository extends JpaRepository<Participat
     @Query("select count(p) from ParticipationRequest p where p.requester.id = ?1 and p.event.id = ?2")
     int countAllByRequester_IdAndEvent_Id(Long userId, Long eventId);
 
-    @Query("select p from ParticipationRequest p where p.event.id = ?1 and p.statusRequest = 'CONFIRMED'")
-    List<ParticipationRequest> findConfirmedRequests(Long eventId);
-
-    @Query("select p from ParticipationRequest p where p.statusRequest = 'CONFIRMED' and p.event.id in ?1")
-    List<ParticipationRequest> findConfirmedRequests(List<Long> ids);
+    @Query("select new ru.practicum.explore_with_me.dto.request.ConfirmedRequestsCount(p.event.id, count(p))" +
+            " from ParticipationRequest p where p.statusRequest = 'CONFIRMED' and p.event.id in ?1" +
+            " group by p.event.id")
+    List<ConfirmedRequestsCount> countConfirmedRequests(List<Long> eventIds);
 
     List<ParticipationRequest> findByIdInOrderByIdAsc(List<Long> requestIds);
 
     List<ParticipationRequest> findAllByEvent_Id(Long eventId);
+
+    @Modifying
+    @Query("update ParticipationRequest p set p.statusRequest = ?2 where p.id in ?1 and p.statusRequest = 'PENDING'")
+    int updateStatus(List<Long> requestIds, StatusRequest status);
+
+    @Modifying
+    @Query("update ParticipationRequest p set p.statusRequest = 'REJECTED'" +
+            " where p.event.id = ?1 and p.statusRequest = 'PENDING'")
+    int rejectPendingRequests(Long eventId);
 }
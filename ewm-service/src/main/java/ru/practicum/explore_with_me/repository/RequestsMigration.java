@@ -0,0 +1,74 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Однократная миграция перед созданием уникального индекса uq_requests_event_user.
+ * До появления индекса гонка могла записать повторные заявки пользователя на одно событие:
+ * из повторов остаётся подтверждённая заявка, а при её отсутствии — самая ранняя.
+ * Удалённые заявки пишутся в лог, счётчик подтверждённых заявок затронутых событий пересчитывается.
+ * После создания индекса миграция больше не выполняется.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestsMigration {
+    private static final String INDEX = "uq_requests_event_user";
+
+    private static final String DELETE_DUPLICATES = "delete from requests r using ("
+            + "select req_id, row_number() over (partition by event_id, user_id "
+            + "order by status = 'CONFIRMED' desc, req_id) as rn from requests) d "
+            + "where r.req_id = d.req_id and d.rn > 1 "
+            + "returning r.req_id, r.event_id, r.user_id, r.status";
+    private static final String RECOUNT_CONFIRMED = "update events e set confirmed_requests = "
+            + "(select count(*) from requests r where r.event_id = e.event_id and r.status = 'CONFIRMED') "
+            + "where e.event_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        if (hasIndex()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // экземпляры, запущенные одновременно, выполняют миграцию по очереди
+            jdbcTemplate.execute("lock table requests in share row exclusive mode");
+            if (hasIndex()) {
+                return;
+            }
+            List<Map<String, Object>> deleted = jdbcTemplate.queryForList(DELETE_DUPLICATES);
+            for (Map<String, Object> row : deleted) {
+                log.warn("Удалена повторная заявка ID = {} пользователя ID = {} на событие ID = {} в статусе {}",
+                        row.get("req_id"), row.get("user_id"), row.get("event_id"), row.get("status"));
+            }
+            List<Object[]> events = deleted.stream()
+                    .map(row -> row.get("event_id"))
+                    .distinct()
+                    .map(eventId -> new Object[]{eventId})
+                    .collect(Collectors.toCollection(ArrayList::new));
+            if (!events.isEmpty()) {
+                jdbcTemplate.batchUpdate(RECOUNT_CONFIRMED, events);
+            }
+            jdbcTemplate.execute("create unique index " + INDEX + " on requests (event_id, user_id)");
+            log.info("Создан индекс {}: удалено {} повторных заявок, пересчитаны заявки {} событий",
+                    INDEX, deleted.size(), events.size());
+        });
+    }
+
+    private boolean hasIndex() {
+        return Boolean.TRUE.equals(
+                jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, INDEX));
+    }
+}
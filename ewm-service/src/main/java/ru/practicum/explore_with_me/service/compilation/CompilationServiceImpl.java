@@ -7,23 +7,25 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.practicum.explore_with_me.dto.StatsResponseDto;
 import ru.practicum.explore_with_me.dto.compilation.CompilationDto;
+import ru.practicum.explore_with_me.dto.compilation.CompilationEvent;
 import ru.practicum.explore_with_me.dto.compilation.NewCompilationDto;
 import ru.practicum.explore_with_me.dto.compilation.UpdateCompilationRequest;
 import ru.practicum.explore_with_me.dto.event.EventShortDto;
 import ru.practicum.explore_with_me.exception.NotFoundRecordInBD;
 import ru.practicum.explore_with_me.mapper.CompilationMapper;
-import ru.practicum.explore_with_me.mapper.CustomMapperForCompilation;
-import ru.practicum.explore_with_me.mapper.EventMapper;
 import ru.practicum.explore_with_me.model.Compilation;
 import ru.practicum.explore_with_me.model.Event;
-import ru.practicum.explore_with_me.model.ParticipationRequest;
 import ru.practicum.explore_with_me.repository.CompilationRepository;
 import ru.practicum.explore_with_me.repository.EventRepository;
-import ru.practicum.explore_with_me.util.UtilService;
+import ru.practicum.explore_with_me.util.EventEnricher;
+import ru.practicum.explore_with_me.util.EventEnricher.Stage;
 
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static ru.practicum.explore_with_me.model.QEvent.event;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -33,8 +35,7 @@ public class CompilationServiceImpl implements CompilationService {
     private final CompilationRepository compilationRepository;
     private final CompilationMapper compilationMapper;
     private final EventRepository eventRepository;
-    private final EventMapper eventMapper;
-    private final UtilService utilService;
+    private final EventEnricher eventEnricher;
 
     @Override
     @Transactional
@@ -48,15 +49,9 @@ public class CompilationServiceImpl implements CompilationService {
         Set<Event> eventSet = new HashSet<>(events);
         compilation.setEvents(eventSet);
         Compilation saved = compilationRepository.save(compilation);
-        List<StatsResponseDto> views = utilService.getViews(events);
-        events = utilService.fillViews(events, views);
-        Map<Event, List<ParticipationRequest>> requests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, requests);
-
-        CompilationDto result = compilationMapper.mapToDto(saved);
-        result.setEvents(eventMapper.mapFromModelListToShortDtoList(events));
+        CompilationDto result = mapToDtoWithEvents(List.of(saved)).get(0);
 
-        log.info("Создана подборка из {} событий", events.size());
+        log.info("Создана подборка из {} событий", result.getEvents().size());
         return result;
     }
 
@@ -75,24 +70,13 @@ public class CompilationServiceImpl implements CompilationService {
         if (updateCompilationDto.getPinned() != null) {
             compilation.setPinned(updateCompilationDto.getPinned());
         }
-        List<Event> events = new ArrayList<>();
         if (updateCompilationDto.getEvents() != null && !updateCompilationDto.getEvents().isEmpty()) {
-            events = eventRepository.findAllById(updateCompilationDto.getEvents());
-            compilation.setEvents(new HashSet<>(events));
+            compilation.setEvents(new HashSet<>(eventRepository.findAllById(updateCompilationDto.getEvents())));
         }
         if (updateCompilationDto.getTitle() != null && !updateCompilationDto.getTitle().isBlank()) {
             compilation.setTitle(updateCompilationDto.getTitle());
         }
-        CompilationDto result = compilationMapper.mapToDto(compilation);
-
-        List<StatsResponseDto> views = utilService.getViews(events);
-        events = utilService.fillViews(events, views);
-
-        Map<Event, List<ParticipationRequest>> requests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, requests);
-
-        result.setEvents(eventMapper.mapFromModelListToShortDtoList(events));
-        return compilationMapper.mapToDto(compilation);
+        return mapToDtoWithEvents(List.of(compilation)).get(0);
     }
 
     @Override
@@ -104,61 +88,55 @@ public class CompilationServiceImpl implements CompilationService {
         } else {
             compilations = compilationRepository.findAllByPinned(pinned, pageable);
         }
+        return mapToDtoWithEvents(compilations);
+    }
 
-        Set<Event> events = new HashSet<>();
-        for (Compilation compilation : compilations) {
-            events.addAll(compilation.getEvents());
-        }
-        List<Event> eventList = new ArrayList<>(events);
-
-        List<StatsResponseDto> views = utilService.getViews(eventList);
-        eventList = utilService.fillViews(eventList, views);
+    @Override
+    public CompilationDto getCompilationById(Long compId) {
+        Compilation compilation = getCompilationOrThrow(compId, "Не найдена подборка ID = %d");
+        CompilationDto result = mapToDtoWithEvents(List.of(compilation)).get(0);
+        log.info("Отправлена подборка ID = {} из {} событий", compId, result.getEvents().size());
+        return result;
+    }
 
-        Map<Event, List<ParticipationRequest>> requests = utilService.prepareConfirmedRequest(eventList);
-        eventList = utilService.fillConfirmedRequests(eventList, requests);
+    /**
+     * События подборок читаются сразу в краткое представление одним запросом на все подборки страницы.
+     */
+    private List<CompilationDto> mapToDtoWithEvents(List<Compilation> compilations) {
+        if (compilations.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<CompilationEvent> links = compilationRepository.findCompilationEvents(compilations.stream()
+                .map(Compilation::getId).collect(Collectors.toList()));
+        List<Long> eventIds = links.stream().map(CompilationEvent::getEventId).distinct().collect(Collectors.toList());
+
+        List<EventShortDto> events = new ArrayList<>();
+        if (!eventIds.isEmpty()) {
+            events = eventRepository.findEventShorts(event.id.in(eventIds), 0, eventIds.size(), event.id.asc());
+            events = eventEnricher.load(eventIds, EnumSet.of(Stage.VIEWS, Stage.CONFIRMED_REQUESTS))
+                    .fillShortDtos(events);
+        }
+        Map<Long, EventShortDto> eventsById = events.stream()
+                .collect(Collectors.toMap(EventShortDto::getId, Function.identity()));
+
+        Map<Long, List<EventShortDto>> eventsByCompilation = new HashMap<>();
+        for (CompilationEvent link : links) {
+            EventShortDto eventShortDto = eventsById.get(link.getEventId());
+            if (eventShortDto != null) {
+                eventsByCompilation.computeIfAbsent(link.getCompilationId(), id -> new ArrayList<>())
+                        .add(eventShortDto);
+            }
+        }
 
         List<CompilationDto> result = new ArrayList<>();
         for (Compilation c : compilations) {
-            List<EventShortDto> eventArrayList = new ArrayList<>();
-            CompilationDto compilationDto = CustomMapperForCompilation.mapFromNewDtoToModel(c);
-            compilationDto.setEvents(new ArrayList<>());
-            Set<Event> eventSet = c.getEvents();
-            for (Event ev : eventSet) {
-                for (Event evFromList : eventList) {
-                    if (evFromList != null && evFromList.getId().equals(ev.getId())) {
-                        eventArrayList.add(eventMapper.mapToShortDto(evFromList));
-                    }
-                }
-            }
-            compilationDto.setEvents(eventArrayList);
+            CompilationDto compilationDto = compilationMapper.mapToDto(c);
+            compilationDto.setEvents(eventsByCompilation.getOrDefault(c.getId(), new ArrayList<>()));
             result.add(compilationDto);
         }
         return result;
     }
 
-    @Override
-    public CompilationDto getCompilationById(Long compId) {
-        Compilation compilation = getCompilationOrThrow(compId,
-                "Не найдена подборка ID = %d");
-
-        List<Event> events = new ArrayList<>(compilation.getEvents());
-
-        Set<Event> eventSet = new HashSet<>(events);
-        compilation.setEvents(eventSet);
-        Compilation saved = compilationRepository.save(compilation);
-        List<StatsResponseDto> views = utilService.getViews(events);
-        events = utilService.fillViews(events, views);
-        Map<Event, List<ParticipationRequest>> requests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, requests);
-
-        CompilationDto result = compilationMapper.mapToDto(saved);
-        result.setEvents(eventMapper.mapFromModelListToShortDtoList(events));
-
-        log.info("Создана подборка из {} событий", events.size());
-
-        return result;
-    }
-
     private Compilation getCompilationOrThrow(Long compId, String message) {
         if (message == null || message.isBlank()) {
             message = "Не найдена подборка ID = %d";
@@ -1,10 +1,14 @@
 package ru.practicum.explore_with_me.service.event;
 
 import ru.practicum.explore_with_me.dto.event.*;
+import ru.practicum.explore_with_me.dto.filter.EventFilter;
+import ru.practicum.explore_with_me.dto.filter.GeoFilter;
 import ru.practicum.explore_with_me.dto.request.EventRequestStatusUpdateRequest;
 import ru.practicum.explore_with_me.dto.request.EventRequestStatusUpdateResult;
 import ru.practicum.explore_with_me.dto.request.ParticipationRequestDto;
+import ru.practicum.explore_with_me.model.EventSort;
 import ru.practicum.explore_with_me.model.EventState;
+import ru.practicum.explore_with_me.model.SearchMode;
 
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
@@ -18,14 +22,18 @@ public interface EventService {
 
     List<EventFullDto> getEventsForAdmin(List<Long> usersId, List<EventState> states,
                                          List<Long> categoriesId, LocalDateTime rangeStart,
-                                         LocalDateTime rangeEnd, String text, Integer from, Integer size);
+                                         LocalDateTime rangeEnd, String text, Integer from, Integer size,
+                                         String cursor);
 
     List<EventShortDto> getEventsForAll(String text, List<Long> categoriesIds, Boolean paid,
                                         LocalDateTime rangeStart, LocalDateTime rangeEnd,
-                                        Boolean onlyAvailable, String sort,
-                                        Integer from, Integer size,
+                                        Boolean onlyAvailable, EventSort sort, SearchMode searchMode,
+                                        Integer from, Integer size, String cursor,
                                         HttpServletRequest httpServletRequest);
 
+    List<EventShortDto> getEventsNearby(GeoFilter geoFilter, EventFilter eventFilter, SearchMode searchMode,
+                                        Integer from, Integer size, HttpServletRequest httpServletRequest);
+
     EventRequestStatusUpdateResult updateRequestStatus(Long userId, Long eventId,
                                                        EventRequestStatusUpdateRequest eventRequestStatusUpdateRequest);
 
@@ -3,19 +3,17 @@ package ru.practicum.explore_with_me.service.event;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Import;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.explore_with_me.WebClientService;
-import ru.practicum.explore_with_me.dto.StatsResponseDto;
-import ru.practicum.explore_with_me.dto.comment.CommentEvent;
 import ru.practicum.explore_with_me.dto.event.*;
 import ru.practicum.explore_with_me.dto.filter.EventFilter;
+import ru.practicum.explore_with_me.dto.filter.GeoFilter;
 import ru.practicum.explore_with_me.dto.request.EventRequestStatusUpdateRequest;
 import ru.practicum.explore_with_me.dto.request.EventRequestStatusUpdateResult;
 import ru.practicum.explore_with_me.dto.request.ParticipationRequestDto;
@@ -30,18 +28,20 @@ import ru.practicum.explore_with_me.repository.CommentRepository;
 import ru.practicum.explore_with_me.repository.EventRepository;
 import ru.practicum.explore_with_me.repository.UserRepository;
 import ru.practicum.explore_with_me.service.request.ParticipationRequestService;
+import ru.practicum.explore_with_me.util.EventCursor;
+import ru.practicum.explore_with_me.util.EventEnricher;
+import ru.practicum.explore_with_me.util.EventEnricher.Stage;
 import ru.practicum.explore_with_me.util.QPredicates;
-import ru.practicum.explore_with_me.util.UtilService;
 
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import static java.util.stream.Collectors.toMap;
 import static ru.practicum.explore_with_me.model.QEvent.event;
 
 @Slf4j
@@ -54,12 +54,13 @@ public class EventServiceImpl implements EventService {
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
     private final CategoryRepository categoryRepository;
-    private final UtilService utilService;
+    private final EventEnricher eventEnricher;
     private final UserMapper userMapper;
     private final WebClientService statsClient;
     private final ParticipationRequestService participationRequestService;
     private final LocationMapper locationMapper;
     private static final String nameApp = "ewm-service";
+    private static final double KM_PER_DEGREE = 111.19;
     private final CommentRepository commentRepository;
 
     @Override
@@ -83,25 +84,15 @@ public class EventServiceImpl implements EventService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<EventShortDto> getMyEvents(Long userId, Integer from, Integer size) {
         UserDto userFromDb = userMapper.mapToUserDto(getUserOrThrow(userId, "Не найден пользователь = {}"));
-        Pageable pageable = PageRequest.of(from, size, Sort.by("id").ascending());
-
         Predicate predicate = event.initiator.id.ne(userId);
 
-        List<Event> events = eventRepository.findAll(predicate, pageable).toList();
-        List<Long> eventIds = events.stream().map(Event::getId).collect(Collectors.toList());
-        List<CommentEvent> commentsCount = commentRepository.getCommentsEvents(eventIds);
-
-        Map<Long, Long> commentsMap = commentsCount.stream()
-                .collect(toMap(CommentEvent::getEventId, CommentEvent::getCommentCount));
-
-        for (Event eve : events) {
-            eve.setComments(commentsMap.getOrDefault(eve.getId(), 0L));
-        }
-
-        List<EventShortDto> result = events.stream()
-                .map(eventMapper::mapToShortDto).collect(Collectors.toList());
+        List<EventShortDto> result = eventRepository.findEventShorts(predicate, (long) from * size, size,
+                event.id.asc());
+        List<Long> eventIds = result.stream().map(EventShortDto::getId).collect(Collectors.toList());
+        eventEnricher.load(eventIds, EnumSet.of(Stage.COMMENTS)).fillShortDtos(result);
 
         log.info("getMyEvents ({} событий), userId = {} и name = {}",
                 result.size(), userFromDb.getId(), userFromDb.getName());
@@ -111,11 +102,10 @@ public class EventServiceImpl implements EventService {
     @Override
     public List<EventFullDto> getEventsForAdmin(List<Long> userIds, List<EventState> states, List<Long> categories,
                                                 LocalDateTime rangeStart, LocalDateTime rangeEnd, String text,
-                                                Integer from, Integer size) {
+                                                Integer from, Integer size, String cursor) {
 
         log.info("GET /admin/events users={},states={},categories={},rangeStart={},rangeEnd={}" +
-                ",from={},size={}", userIds, states, categories, rangeStart, rangeEnd, from, size);
-        Pageable pageable = PageRequest.of(from, size, Sort.by("id").ascending());
+                ",from={},size={},cursor={}", userIds, states, categories, rangeStart, rangeEnd, from, size, cursor);
 
         EventFilter eventFilter = EventFilter.builder()
                 .userIds(userIds)
@@ -123,7 +113,7 @@ public class EventServiceImpl implements EventService {
                 .categories(categories)
                 .rangeStart(rangeStart)
                 .rangeEnd(rangeEnd)
-                .text("%" + text.trim().toLowerCase() + "%").build();
+                .text(text).build();
 
         BooleanBuilder booleanBuilderForStates = new BooleanBuilder();
         if (states != null) {
@@ -132,13 +122,7 @@ public class EventServiceImpl implements EventService {
                 booleanBuilderForStates.andAnyOf(eq);
             }
         }
-        Predicate predicateForText = null;
-        if (eventFilter.getText() != null && eventFilter.getText().isBlank()) {
-            predicateForText = QPredicates.builder()
-                    .add(event.annotation.likeIgnoreCase(eventFilter.getText()))
-                    .add(event.description.likeIgnoreCase(eventFilter.getText()))
-                    .buildOr();
-        }
+        Predicate predicateForText = getTextPredicate(eventFilter.getText(), SearchMode.LIKE);
 
         QPredicates qPredicatesWithoutStatesAndText = QPredicates.builder()
                 .add(eventFilter.getUserIds(), event.initiator.id::in)
@@ -147,76 +131,56 @@ public class EventServiceImpl implements EventService {
                 .add(eventFilter.getRangeStart(), event.eventDate::after)
                 .add(eventFilter.getRangeEnd(), event.eventDate::before);
 
+        long offset = (long) from * size;
+        if (cursor != null) {
+            qPredicatesWithoutStatesAndText.add(event.id.gt(EventCursor.decode(cursor).getId()));
+            offset = 0;
+        }
+
         Predicate filterForAll = qPredicatesWithoutStatesAndText
                 .add(predicateForText)
                 .add(booleanBuilderForStates.getValue())
                 .buildAnd();
-        List<Event> events;
-        if (filterForAll == null) {
-            events = eventRepository.findAll(pageable).toList();
-        } else {
-            events = eventRepository.findAll(filterForAll, pageable).toList();
-        }
-
-        List<StatsResponseDto> stats = utilService.getViews(events);
-        events = utilService.fillViews(events, stats);
-
-        Map<Event, List<ParticipationRequest>> confirmedRequests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, confirmedRequests);
+        List<Event> events = eventRepository.findEvents(filterForAll, offset, size, event.id.asc());
+        events = eventEnricher.load(getIds(events), EnumSet.of(Stage.VIEWS, Stage.CONFIRMED_REQUESTS)).fill(events);
 
         return eventMapper.mapFromModelListToFullDtoList(events);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<EventShortDto> getEventsForAll(String text, List<Long> categoriesIds, Boolean paid,
                                                LocalDateTime rangeStart, LocalDateTime rangeEnd,
-                                               Boolean onlyAvailable, String sort,
-                                               Integer from, Integer size,
+                                               Boolean onlyAvailable, EventSort sort, SearchMode searchMode,
+                                               Integer from, Integer size, String cursor,
                                                HttpServletRequest httpServletRequest) {
-        log.info("GET /events text:{},\ncategories:{}," +
-                        "paid:{},rangeStart:{},rangeEnd:{},\nonlyAvailable:{},sort:{},from:{}, size:{}",
-                text, categoriesIds, paid, rangeStart, rangeEnd, onlyAvailable, sort, from, size);
-        Sort sortForResponse;
-
+        log.info("GET /events text:{},searchMode:{},\ncategories:{}," +
+                        "paid:{},rangeStart:{},rangeEnd:{},\nonlyAvailable:{},sort:{},from:{}, size:{}, cursor:{}",
+                text, searchMode, categoriesIds, paid, rangeStart, rangeEnd, onlyAvailable, sort, from, size, cursor);
         if (rangeStart != null && !rangeStart.isBefore(rangeEnd)) {
             throw new InvalidDateTimeException("rangeEnd не может быть меньше rangeStart");
         }
 
-        if (sort == null || sort.isBlank() || sort.equalsIgnoreCase("EVENT_DATE")) {
-            sortForResponse = Sort.by("eventDate").ascending();
-        } else if (!sort.isBlank() && sort.equals("VIEWS")) {
-            sortForResponse = Sort.by("views").ascending();
-        } else {
-            throw new InvalidSortException(String.format("Не корректный параметр сортировки = %s", sort));
+        boolean sortByViews = sort == EventSort.VIEWS;
+        boolean sortByRelevance = sort == EventSort.RELEVANCE;
+        if (sortByRelevance && (searchMode != SearchMode.FULLTEXT || text.isBlank())) {
+            throw new InvalidSortException("Сортировка RELEVANCE поддерживается только для полнотекстового поиска");
         }
-        try {
-            statsClient.save(
-                    nameApp,
-                    httpServletRequest.getRequestURI(),
-                    httpServletRequest.getRemoteAddr(),
-                    LocalDateTime.now()
-            );
-        } catch (StatsException e) {
-            log.error("Ошибка при отправке статистики");
+        if (sortByRelevance && cursor != null) {
+            throw new InvalidCursorException("Курсор не поддерживается для сортировки RELEVANCE");
         }
-
-        Pageable pageable = PageRequest.of(from, size, sortForResponse);
+        statsClient.save(nameApp, httpServletRequest.getRequestURI(),
+                httpServletRequest.getRemoteAddr(), LocalDateTime.now());
 
         EventFilter eventFilter = EventFilter.builder()
-                .text("%" + text.trim().toLowerCase() + "%")
+                .text(text)
                 .categories(categoriesIds)
                 .paid(paid)
                 .rangeStart(rangeStart)
                 .rangeEnd(rangeEnd)
                 .onlyAvailable(onlyAvailable)
                 .build();
-        Predicate predicateForText = null;
-        if (!eventFilter.getText().isBlank()) {
-            predicateForText = QPredicates.builder()
-                    .add(event.annotation.likeIgnoreCase(eventFilter.getText()))
-                    .add(event.description.likeIgnoreCase(eventFilter.getText()))
-                    .buildOr();
-        }
+        Predicate predicateForText = getTextPredicate(eventFilter.getText(), searchMode);
 
         QPredicates qPredicatesWithoutStatesAndText = QPredicates.builder()
                 .add(eventFilter.getCategories(), event.category.id::in)
@@ -224,16 +188,96 @@ public class EventServiceImpl implements EventService {
                 .add(eventFilter.getRangeStart(), event.eventDate::after)
                 .add(eventFilter.getRangeEnd(), event.eventDate::before);
 
+        long offset = (long) from * size;
+        if (cursor != null) {
+            EventCursor after = EventCursor.decode(cursor);
+            // граница по первому ключу сортировки позволяет начать чтение индекса сразу с курсора
+            if (sortByViews && after.getViews() != null) {
+                qPredicatesWithoutStatesAndText.add(event.indexedViews.loe(after.getViews())
+                        .and(event.indexedViews.lt(after.getViews()).or(event.id.gt(after.getId()))));
+            } else if (!sortByViews && after.getEventDate() != null) {
+                qPredicatesWithoutStatesAndText.add(event.eventDate.goe(after.getEventDate())
+                        .and(event.eventDate.gt(after.getEventDate()).or(event.id.gt(after.getId()))));
+            } else {
+                throw new InvalidCursorException(String.format("Некорректный курсор = %s", cursor));
+            }
+            offset = 0;
+        }
+
         Predicate filterForAll = qPredicatesWithoutStatesAndText
                 .add(predicateForText)
                 .buildAnd();
-        List<Event> events = eventRepository.findAll(filterForAll, pageable).toList();
+        List<EventShortDto> events;
+        if (sortByViews) {
+            events = eventRepository.findEventShorts(filterForAll, offset, size, event.indexedViews.desc(),
+                    event.id.asc());
+        } else if (sortByRelevance) {
+            events = eventRepository.findEventShorts(filterForAll, offset, size,
+                    Expressions.numberTemplate(Float.class, "fts_rank({0}, {1}, {2})",
+                            event.annotation, event.description, text.trim()).desc(), event.id.asc());
+        } else {
+            events = eventRepository.findEventShorts(filterForAll, offset, size, event.eventDate.asc(),
+                    event.id.asc());
+        }
+        List<Long> eventIds = events.stream().map(EventShortDto::getId).collect(Collectors.toList());
+
+        // при сортировке по просмотрам остаются значения из индекса, чтобы порядок в ответе совпадал с курсором
+        Set<Stage> stages = sortByViews
+                ? EnumSet.of(Stage.CONFIRMED_REQUESTS) : EnumSet.of(Stage.VIEWS, Stage.CONFIRMED_REQUESTS);
+        return eventEnricher.load(eventIds, stages).fillShortDtos(events);
+    }
+
+    @Override
+    public List<EventShortDto> getEventsNearby(GeoFilter geoFilter, EventFilter eventFilter, SearchMode searchMode,
+                                               Integer from, Integer size, HttpServletRequest httpServletRequest) {
+        log.info("GET /events/nearby lat:{},lon:{},radius:{},\nminLat:{},maxLat:{},minLon:{},maxLon:{},from:{}, size:{}",
+                geoFilter.getLat(), geoFilter.getLon(), geoFilter.getRadius(), geoFilter.getMinLat(),
+                geoFilter.getMaxLat(), geoFilter.getMinLon(), geoFilter.getMaxLon(), from, size);
+        checkGeoFilter(geoFilter);
+        if (eventFilter.getRangeStart() != null && eventFilter.getRangeEnd() != null
+                && !eventFilter.getRangeStart().isBefore(eventFilter.getRangeEnd())) {
+            throw new InvalidDateTimeException("rangeEnd не может быть меньше rangeStart");
+        }
+        statsClient.save(nameApp, httpServletRequest.getRequestURI(),
+                httpServletRequest.getRemoteAddr(), LocalDateTime.now());
+
+        double centerLat = geoFilter.getLat() != null
+                ? geoFilter.getLat() : (geoFilter.getMinLat() + geoFilter.getMaxLat()) / 2;
+        double centerLon = geoFilter.getLon() != null
+                ? geoFilter.getLon() : (geoFilter.getMinLon() + geoFilter.getMaxLon()) / 2;
+        NumberExpression<Double> distance = Expressions.numberTemplate(Double.class,
+                "geo_distance({0}, {1}, {2}, {3}, {4})", event.location.lat, event.location.lon, centerLat, centerLon,
+                Math.cos(Math.toRadians(centerLat)));
 
-        List<StatsResponseDto> stats = utilService.getViews(events);
-        events = utilService.fillViews(events, stats);
+        QPredicates predicates = QPredicates.builder()
+                .add(event.eventState.eq(EventState.PUBLISHED))
+                .add(eventFilter.getCategories(), event.category.id::in)
+                .add(eventFilter.getPaid(), event.paid::eq)
+                .add(eventFilter.getRangeStart(), event.eventDate::after)
+                .add(eventFilter.getRangeEnd(), event.eventDate::before)
+                .add(getTextPredicate(eventFilter.getText(), searchMode));
+        if (geoFilter.getRadius() != null) {
+            // прямоугольник вокруг круга отбирает кандидатов по индексу (lat, lon), точное расстояние проверяется после
+            double latDelta = geoFilter.getRadius() / KM_PER_DEGREE;
+            predicates.add(event.location.lat.between((float) (centerLat - latDelta), (float) (centerLat + latDelta)));
+            double cos = Math.cos(Math.toRadians(centerLat));
+            double lonDelta = cos > 0 ? geoFilter.getRadius() / (KM_PER_DEGREE * cos) : Double.MAX_VALUE;
+            if (centerLon - lonDelta >= -180 && centerLon + lonDelta <= 180) {
+                predicates.add(event.location.lon.between((float) (centerLon - lonDelta),
+                        (float) (centerLon + lonDelta)));
+            }
+            predicates.add(distance.loe(geoFilter.getRadius()));
+        }
+        if (geoFilter.getMinLat() != null) {
+            predicates.add(event.location.lat.between(geoFilter.getMinLat().floatValue(),
+                            geoFilter.getMaxLat().floatValue()))
+                    .add(event.location.lon.between(geoFilter.getMinLon().floatValue(),
+                            geoFilter.getMaxLon().floatValue()));
+        }
 
-        Map<Event, List<ParticipationRequest>> confirmedRequests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, confirmedRequests);
+        List<Event> events = eventRepository.findEventsByDistance(predicates.buildAnd(), distance,
+                (long) from * size, size);
+        events = eventEnricher.load(getIds(events), EnumSet.of(Stage.VIEWS, Stage.CONFIRMED_REQUESTS)).fill(events);
 
         return eventMapper.mapFromModelListToShortDtoList(events);
     }
@@ -246,14 +290,7 @@ public class EventServiceImpl implements EventService {
         eventFromDb = updateEventsFieldsByAdmin(eventFromDb, updateEventAdminRequest);
 
         eventFromDb = eventRepository.save(eventFromDb);
-        List<Event> events = List.of(eventFromDb);
-        List<StatsResponseDto> stats = utilService.getViews(events);
-        events = utilService.fillViews(events, stats);
-
-        Map<Event, List<ParticipationRequest>> confirmedRequests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, confirmedRequests);
-        Event result = events.get(0);
-        result.setComments(commentRepository.countCommentsForEvent(eventId));
+        Event result = enrich(eventFromDb);
         log.info("updateEventAdmin ID = {}", eventId);
         return eventMapper.mapFromModelToFullDto(result);
     }
@@ -266,16 +303,9 @@ public class EventServiceImpl implements EventService {
             throw new NotFoundRecordInBD("Событие должно быть опубликовано");
         }
 
-        List<Event> events = List.of(event);
         statsClient.save(nameApp, httpServletRequest.getRequestURI(),
                 httpServletRequest.getRemoteAddr(), LocalDateTime.now());
-        List<StatsResponseDto> stats = utilService.getViews(events);
-        events = utilService.fillViews(events, stats);
-
-        Map<Event, List<ParticipationRequest>> confirmedRequests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, confirmedRequests);
-        Event result = events.get(0);
-        result.setComments(commentRepository.countCommentsForEvent(result.getId()));
+        Event result = enrich(event);
         log.info("getEventById ID = {}", eventId);
         return eventMapper.mapFromModelToFullDto(result);
     }
@@ -284,14 +314,7 @@ public class EventServiceImpl implements EventService {
     public EventFullDto getMyEventById(Long userId, Long eventId) {
         Event event = getEventOrThrow(eventId, "Событие не найдено ID = %d, userId = " + userId);
 
-        List<Event> events = List.of(event);
-        List<StatsResponseDto> stats = utilService.getViews(events);
-        events = utilService.fillViews(events, stats);
-
-        Map<Event, List<ParticipationRequest>> confirmedRequests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, confirmedRequests);
-        Event result = events.get(0);
-        result.setComments(commentRepository.countCommentsForEvent(result.getId()));
+        Event result = enrich(event);
         log.info("Отправлен ответ на запрос события ID = {}", eventId);
         return eventMapper.mapFromModelToFullDto(result);
     }
@@ -320,14 +343,7 @@ public class EventServiceImpl implements EventService {
         eventFromDb = updateEventsFieldsByUser(eventFromDb, updateEventUserRequest);
         Event savedEvent = eventRepository.save(eventFromDb);
 
-        List<Event> events = List.of(savedEvent);
-        List<StatsResponseDto> stats = utilService.getViews(events);
-        events = utilService.fillViews(events, stats);
-
-        Map<Event, List<ParticipationRequest>> confirmedRequests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, confirmedRequests);
-        Event result = events.get(0);
-        result.setComments(commentRepository.countCommentsForEvent(result.getId()));
+        Event result = enrich(savedEvent);
         log.info("Выполнено обновление события ID = {}", eventId);
 
         return eventMapper.mapFromModelToFullDto(result);
@@ -361,52 +377,115 @@ public class EventServiceImpl implements EventService {
     }
 
     @Override
+    @Transactional
     public EventRequestStatusUpdateResult updateRequestStatus(Long userId, Long eventId,
                                                               EventRequestStatusUpdateRequest eventRequestStatusUpdateRequest) {
         getUserOrThrow(userId, "Не найден пользователь с ID = %d");
         Event eventFromDb = getEventOrThrow(eventId, "Событие не найдено");
 
-        List<Event> events = setViewsAndConfirmedRequests(List.of(eventFromDb));
-
-        eventFromDb = events.get(0);
-
         EventRequestStatusUpdateResult result = new EventRequestStatusUpdateResult();
 
         if (eventFromDb.getParticipantLimit() == 0 || !eventFromDb.getRequestModeration()) {
             return result;
         }
-        if (eventFromDb.getParticipantLimit() <= eventFromDb.getConfirmedRequests()) {
-            throw new OperationFailedException("Закончились свободные места на участие в событии или " +
-                    "запрос на участие уже был подтверждён");
+        // строка события блокируется до чтения заявок: параллельные вызовы по тем же заявкам
+        // проверяют статусы уже после фиксации предыдущего
+        int freePlaces = eventFromDb.getParticipantLimit() - eventRepository.lockConfirmedRequests(eventId);
+        List<Long> requestIds = eventRequestStatusUpdateRequest.getRequestIds().stream()
+                .distinct()
+                .collect(Collectors.toList());
+        List<ParticipationRequestDto> requests = participationRequestService.findRequestByIds(requestIds);
+        if (requests.size() != requestIds.size()) {
+            Set<Long> found = requests.stream().map(ParticipationRequestDto::getId).collect(Collectors.toSet());
+            throw new NotFoundRecordInBD(String.format("Не найдены заявки с ID = %s", requestIds.stream()
+                    .filter(id -> !found.contains(id))
+                    .collect(Collectors.toList())));
         }
-
-        List<ParticipationRequestDto> requests =
-                participationRequestService.findRequestByIds(eventRequestStatusUpdateRequest.getRequestIds());
         for (ParticipationRequestDto request : requests) {
+            if (!eventId.equals(request.getEvent())) {
+                throw new OperationFailedException(
+                        String.format("Заявка ID = %d не относится к событию ID = %d", request.getId(), eventId));
+            }
             if (request.getStatus() != StatusRequest.PENDING) {
                 throw new OperationFailedException("Статус запроса != \"PENDING\"");
             }
-            if (checkParticipantLimit(eventFromDb) &&
-                    eventRequestStatusUpdateRequest.getStatus() == StatusRequest.CONFIRMED) {
+        }
+        if (freePlaces <= 0) {
+            throw new OperationFailedException("Закончились свободные места на участие в событии или " +
+                    "запрос на участие уже был подтверждён");
+        }
+        int toConfirm = eventRequestStatusUpdateRequest.getStatus() == StatusRequest.CONFIRMED
+                ? Math.min(freePlaces, requests.size()) : 0;
+        for (int i = 0; i < requests.size(); i++) {
+            ParticipationRequestDto request = requests.get(i);
+            if (i < toConfirm) {
                 request.setStatus(StatusRequest.CONFIRMED);
                 result.getConfirmedRequests().add(request);
-                participationRequestService.updateRequest(request.getId(), StatusRequest.CONFIRMED);
-                events = setViewsAndConfirmedRequests(events);
             } else {
                 request.setStatus(StatusRequest.REJECTED);
                 result.getRejectedRequests().add(request);
             }
-
         }
+        int confirmed = participationRequestService.updateRequestsStatus(result.getConfirmedRequests().stream()
+                .map(ParticipationRequestDto::getId).collect(Collectors.toList()), StatusRequest.CONFIRMED);
+        int rejected = participationRequestService.updateRequestsStatus(result.getRejectedRequests().stream()
+                .map(ParticipationRequestDto::getId).collect(Collectors.toList()), StatusRequest.REJECTED);
+        if (confirmed + rejected != requests.size()) {
+            throw new OperationFailedException("Статус части заявок изменён параллельным запросом");
+        }
+        if (toConfirm > 0) {
+            eventRepository.addConfirmedRequests(eventId, toConfirm);
+            if (toConfirm == freePlaces) {
+                participationRequestService.rejectPendingRequests(eventId);
+            }
+        }
+        log.info("Для события ID = {} подтверждено заявок: {}, отклонено: {}", eventId,
+                result.getConfirmedRequests().size(), result.getRejectedRequests().size());
         return result;
     }
 
 
-    private boolean checkParticipantLimit(Event event) {
-        if (event.getParticipantLimit() - event.getConfirmedRequests() > 0) {
-            return true;
+    /**
+     * Поиск задаётся точкой с радиусом в километрах, прямоугольником или и тем и другим.
+     * Прямоугольники через антимеридиан не поддерживаются.
+     */
+    private void checkGeoFilter(GeoFilter geoFilter) {
+        boolean hasPoint = geoFilter.getLat() != null && geoFilter.getLon() != null;
+        boolean hasBox = geoFilter.getMinLat() != null && geoFilter.getMaxLat() != null
+                && geoFilter.getMinLon() != null && geoFilter.getMaxLon() != null;
+        if (!hasPoint && !hasBox) {
+            throw new InvalidLocationException("Нужно задать точку lat, lon или границы области minLat, maxLat, " +
+                    "minLon, maxLon");
+        }
+        if (geoFilter.getRadius() != null && (!hasPoint || geoFilter.getRadius() <= 0)) {
+            throw new InvalidLocationException("Радиус должен быть положительным и задаваться вместе с точкой");
+        }
+        if (hasPoint && (Math.abs(geoFilter.getLat()) > 90 || Math.abs(geoFilter.getLon()) > 180)) {
+            throw new InvalidLocationException(String.format("Некорректные координаты точки: %s, %s",
+                    geoFilter.getLat(), geoFilter.getLon()));
+        }
+        if (hasBox && (geoFilter.getMinLat() > geoFilter.getMaxLat() || geoFilter.getMinLon() > geoFilter.getMaxLon())) {
+            throw new InvalidLocationException("Нижняя граница области поиска больше верхней");
         }
-        return false;
+    }
+
+    /**
+     * Условие поиска по аннотации и описанию. LIKE ищет подстроку перебором строк,
+     * FULLTEXT — слова с учётом словоформ по GIN-индексу idx_events_fts.
+     */
+    private Predicate getTextPredicate(String text, SearchMode searchMode) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        if (searchMode == SearchMode.FULLTEXT) {
+            return Expressions.booleanTemplate("fts_match({0}, {1}, {2}) = true",
+                    event.annotation, event.description, text.trim());
+        }
+        String pattern = "%" + text.trim().toLowerCase() + "%";
+        return QPredicates.builder()
+                .add(event.annotation.likeIgnoreCase(pattern))
+                .add(event.description.likeIgnoreCase(pattern))
+                .buildOr();
     }
 
     private Event getEventOrThrow(Long eventId, String message) {
@@ -553,13 +632,12 @@ public class EventServiceImpl implements EventService {
         return oldEvent;
     }
 
-    private List<Event> setViewsAndConfirmedRequests(List<Event> events) {
-        List<StatsResponseDto> stats = utilService.getViews(events);
-        events = utilService.fillViews(events, stats);
+    private Event enrich(Event event) {
+        return eventEnricher.load(List.of(event.getId()), EnumSet.allOf(Stage.class)).fill(List.of(event)).get(0);
+    }
 
-        Map<Event, List<ParticipationRequest>> confirmedRequests = utilService.prepareConfirmedRequest(events);
-        events = utilService.fillConfirmedRequests(events, confirmedRequests);
-        return events;
+    private List<Long> getIds(List<Event> events) {
+        return events.stream().map(Event::getId).collect(Collectors.toList());
     }
 
 }
\ No newline at end of file
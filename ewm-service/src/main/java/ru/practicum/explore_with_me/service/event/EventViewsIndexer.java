@@ -0,0 +1,56 @@
+package ru.practicum.explore_with_me.service.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientException;
+import ru.practicum.explore_with_me.repository.EventViewsRepository;
+import ru.practicum.explore_with_me.util.ViewsCache;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Переносит просмотры событий из сервиса статистики в колонку events.indexed_views, по которой работает
+ * сортировка VIEWS. Пересчитываются только события, у которых были просмотры с прошлого запуска:
+ * их находит запрос по префиксу /events/* без уникальности IP, затем точные просмотры загружаются порциями.
+ * Хиты приходят в сервис статистики пачками с задержкой, поэтому окно начинается на интервал раньше конца
+ * прошлого запуска. Первый запуск после старта пересчитывает все события с просмотрами.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventViewsIndexer {
+    private final EventViewsRepository eventViewsRepository;
+    private final ViewsCache viewsCache;
+
+    @Value("${views-index.chunk:500}")
+    private int chunkSize;
+    @Value("${views-index.interval-ms:60000}")
+    private long intervalMs;
+
+    private LocalDateTime syncedUntil;
+
+    @Scheduled(fixedDelayString = "${views-index.interval-ms:60000}")
+    public void sync() {
+        LocalDateTime until = LocalDateTime.now();
+        LocalDateTime since = syncedUntil == null ? null : syncedUntil.minus(intervalMs, ChronoUnit.MILLIS);
+        int updated = 0;
+        try {
+            List<Long> eventIds = viewsCache.findViewedEvents(since, until);
+            for (int from = 0; from < eventIds.size(); from += chunkSize) {
+                List<Long> chunk = eventIds.subList(from, Math.min(from + chunkSize, eventIds.size()));
+                updated += eventViewsRepository.updateIndexedViews(viewsCache.refresh(chunk));
+            }
+            syncedUntil = until;
+        } catch (WebClientException e) {
+            log.error("Ошибка сервиса статистики при обновлении индекса просмотров: {}", e.getMessage());
+        }
+        if (updated > 0) {
+            log.info("Обновлены просмотры {} событий в индексе", updated);
+        }
+    }
+}
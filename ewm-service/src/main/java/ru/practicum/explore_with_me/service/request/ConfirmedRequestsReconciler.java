@@ -0,0 +1,46 @@
+package ru.practicum.explore_with_me.service.request;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.explore_with_me.repository.EventRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Сверяет счётчик confirmed_requests событий с числом подтверждённых заявок и исправляет расхождения.
+ * Строка события блокируется до пересчёта: все изменения счётчика идут в одной транзакции со сменой
+ * статуса заявки и тоже блокируют эту строку, поэтому пересчёт видит их уже завершёнными.
+ * Сверяются только предстоящие события и прошедшие не раньше lookback: по ним ещё меняются заявки,
+ * а по индексу event_date проверка не обходит всю таблицу событий.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConfirmedRequestsReconciler {
+    private final EventRepository eventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${confirmed-requests.reconcile-lookback:1d}")
+    private Duration lookback;
+
+    @Scheduled(fixedDelayString = "${confirmed-requests.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        List<Long> eventIds = eventRepository.findEventsWithConfirmedRequestsDrift(
+                LocalDateTime.now().minus(lookback));
+        for (Long eventId : eventIds) {
+            transactionTemplate.executeWithoutResult(status -> {
+                eventRepository.lockEvent(eventId);
+                eventRepository.recountConfirmedRequests(eventId);
+            });
+        }
+        if (!eventIds.isEmpty()) {
+            log.info("Пересчитано число подтверждённых заявок для {} событий", eventIds.size());
+        }
+    }
+}
@@ -17,6 +17,13 @@ public interface ParticipationRequestService {
 
     List<ParticipationRequestDto> findRequestByIds(List<Long> ids);
 
-    ParticipationRequestDto updateRequest(Long idRequest, StatusRequest status);
+    /**
+     * Меняет статус заявок, которые ещё ожидают решения.
+     *
+     * @return число изменённых заявок
+     */
+    int updateRequestsStatus(List<Long> requestIds, StatusRequest status);
+
+    int rejectPendingRequests(Long eventId);
 
 }
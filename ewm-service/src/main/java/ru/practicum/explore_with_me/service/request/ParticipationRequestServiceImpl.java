@@ -2,8 +2,11 @@ package ru.practicum.explore_with_me.service.request;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.explore_with_me.dto.request.ParticipationRequestDto;
 import ru.practicum.explore_with_me.exception.NotFoundRecordInBD;
 import ru.practicum.explore_with_me.exception.OperationFailedException;
@@ -12,25 +15,52 @@ import ru.practicum.explore_with_me.model.*;
 import ru.practicum.explore_with_me.repository.EventRepository;
 import ru.practicum.explore_with_me.repository.ParticipationRequestRepository;
 import ru.practicum.explore_with_me.repository.UserRepository;
+import ru.practicum.explore_with_me.util.StripedLocks;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ParticipationRequestServiceImpl implements ParticipationRequestService {
+    private static final int EVENT_LOCK_STRIPES = 256;
+    private static final String UNIQUE_EVENT_USER = "uq_requests_event_user";
 
     private final ParticipationRequestRepository participationRequestRepository;
     private final UserRepository userRepository;
     private final ParticipationRequestMapper requestMapper;
     private final EventRepository eventRepository;
-
+    private final TransactionTemplate transactionTemplate;
+    private final StripedLocks eventLocks = new StripedLocks(EVENT_LOCK_STRIPES);
+
+    /**
+     * Заявки на одно событие обрабатываются по очереди: в пределах экземпляра сервиса их упорядочивает
+     * блокировка события, так что соединения с БД не простаивают в ожидании блокировки строки события.
+     * Лимит участников и единственность заявки пользователя гарантирует БД: счётчик подтверждённых заявок
+     * меняется условным update, а повторную заявку не пропустит уникальный индекс.
+     */
     @Override
     public ParticipationRequestDto create(Long userId, Long eventId) {
+        ReentrantLock lock = eventLocks.get(eventId);
+        lock.lock();
+        try {
+            return transactionTemplate.execute(status -> createRequest(userId, eventId));
+        } catch (DataIntegrityViolationException e) {
+            if (!isViolated(e, UNIQUE_EVENT_USER)) {
+                throw e;
+            }
+            throw new OperationFailedException(
+                    String.format("Нельзя добавить повторный запрос на участие в событии ID = %d", eventId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ParticipationRequestDto createRequest(Long userId, Long eventId) {
         User userFromDb = getUserOrThrow(userId, "Не найден пользователь ID = %d");
         Event eventFromDb = getEventOrThrow(eventId, "Не найдено событие ID = %d");
         if (userId.equals(eventFromDb.getInitiator().getId())) {
@@ -46,22 +76,18 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
             throw new OperationFailedException(
                     String.format("Нельзя добавить повторный запрос на участие в событии ID = %d", eventId));
         }
-        if (eventFromDb.getParticipantLimit() != 0) {
-            List<ParticipationRequest> confirmedRequests =
-                    participationRequestRepository.findConfirmedRequests(eventId);
-
-            if (confirmedRequests.size() == eventFromDb.getParticipantLimit()) {
-                throw new OperationFailedException("Достигнут лимит запросов");
-            }
-        }
         ParticipationRequest participationRequest = new ParticipationRequest();
         participationRequest.setRequester(userFromDb);
 
-        if (eventFromDb.getParticipantLimit().equals(0)) {
-            participationRequest.setStatusRequest(StatusRequest.CONFIRMED);
-        } else if (eventFromDb.getRequestModeration()) {
+        if (eventFromDb.getParticipantLimit() != 0 && eventFromDb.getRequestModeration()) {
+            if (eventRepository.getConfirmedRequests(eventId) >= eventFromDb.getParticipantLimit()) {
+                throw new OperationFailedException("Достигнут лимит запросов");
+            }
             participationRequest.setStatusRequest(StatusRequest.PENDING);
         } else {
+            if (eventRepository.incrementConfirmedRequests(eventId) == 0) {
+                throw new OperationFailedException("Достигнут лимит запросов");
+            }
             participationRequest.setStatusRequest(StatusRequest.CONFIRMED);
         }
 
@@ -82,16 +108,20 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
     }
 
     @Override
+    @Transactional
     public ParticipationRequestDto cancelRequest(Long userId, Long requestId) {
         getUserOrThrow(userId, "не найден пользователь ID = %d");
-        getEventOrThrow(requestId, "Не найдено событие ID = %d");
         ParticipationRequest participationRequest = participationRequestRepository.findById(requestId)
                 .orElseThrow(() -> new NotFoundRecordInBD(String.format("Не найдена заявка ID = %d", requestId)));
 
         if (!Objects.equals(participationRequest.getRequester().getId(), userId)) {
             throw new OperationFailedException("Отменить запрос может только инициатор");
         }
+        if (participationRequest.getStatusRequest() == StatusRequest.CONFIRMED) {
+            eventRepository.decrementConfirmedRequests(participationRequest.getEvent().getId());
+        }
         participationRequest.setStatusRequest(StatusRequest.CANCELED);
+        participationRequest = participationRequestRepository.save(participationRequest);
         log.info("Выполнена отмена заявки на событие ID = {}, пользователем ID = {}", requestId, userId);
         return requestMapper.mapToDto(participationRequest);
     }
@@ -112,14 +142,24 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
 
     @Override
     @Transactional
-    public ParticipationRequestDto updateRequest(Long idRequest, StatusRequest status) {
-        Optional<ParticipationRequest> request = participationRequestRepository.findById(idRequest);
-        ParticipationRequest result = null;
-        if (request.isPresent()) {
-            request.get().setStatusRequest(status);
-            result = participationRequestRepository.save(request.get());
+    public int updateRequestsStatus(List<Long> requestIds, StatusRequest status) {
+        if (requestIds.isEmpty()) {
+            return 0;
         }
-        return requestMapper.mapToDto(result);
+        return participationRequestRepository.updateStatus(requestIds, status);
+    }
+
+    @Override
+    @Transactional
+    public int rejectPendingRequests(Long eventId) {
+        int rejected = participationRequestRepository.rejectPendingRequests(eventId);
+        log.info("Отклонено {} заявок в ожидании на событие ID = {}", rejected, eventId);
+        return rejected;
+    }
+
+    private static boolean isViolated(DataIntegrityViolationException e, String constraint) {
+        return e.getCause() instanceof ConstraintViolationException
+                && constraint.equals(((ConstraintViolationException) e.getCause()).getConstraintName());
     }
 
     private User getUserOrThrow(Long userId, String message) {
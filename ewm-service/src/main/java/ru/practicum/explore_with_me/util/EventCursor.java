@@ -0,0 +1,81 @@
+package ru.practicum.explore_with_me.util;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.practicum.explore_with_me.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция последнего события страницы: дата события и id, число просмотров и id либо только id.
+ * Клиенту отдаётся в виде непрозрачной строки и возвращается им за следующей страницей.
+ * Просмотры берутся из events.indexed_views, которую фоновая задача переписывает между запросами страниц:
+ * если просмотры события изменились после выдачи курсора, при сортировке VIEWS событие может
+ * повториться на следующей странице или не попасть ни на одну. Для сортировки по дате и по id порядок стабилен.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class EventCursor {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String SEPARATOR = "|";
+    private static final char EVENT_DATE = 'd';
+    private static final char VIEWS = 'v';
+
+    private final LocalDateTime eventDate;
+    private final Integer views;
+    private final Long id;
+
+    public static EventCursor of(Long id) {
+        return new EventCursor(null, null, id);
+    }
+
+    public static EventCursor byEventDate(LocalDateTime eventDate, Long id) {
+        return new EventCursor(eventDate, null, id);
+    }
+
+    public static EventCursor byViews(Integer views, Long id) {
+        return new EventCursor(null, views, id);
+    }
+
+    public String encode() {
+        String raw;
+        if (eventDate != null) {
+            raw = EVENT_DATE + eventDate.toString() + SEPARATOR + id;
+        } else if (views != null) {
+            raw = VIEWS + views.toString() + SEPARATOR + id;
+        } else {
+            raw = String.valueOf(id);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static EventCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                return of(Long.parseLong(raw));
+            }
+            if (separator == 0) {
+                // нет типа и значения ключа перед разделителем
+                throw new IllegalArgumentException(raw);
+            }
+            String key = raw.substring(1, separator);
+            Long id = Long.parseLong(raw.substring(separator + 1));
+            switch (raw.charAt(0)) {
+                case EVENT_DATE:
+                    return byEventDate(LocalDateTime.parse(key), id);
+                case VIEWS:
+                    return byViews(Integer.parseInt(key), id);
+                default:
+                    throw new IllegalArgumentException(raw);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException(String.format("Некорректный курсор = %s", cursor));
+        }
+    }
+}
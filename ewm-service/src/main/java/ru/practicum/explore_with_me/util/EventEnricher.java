@@ -0,0 +1,230 @@
+package ru.practicum.explore_with_me.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.explore_with_me.dto.comment.CommentEvent;
+import ru.practicum.explore_with_me.dto.event.EventShortDto;
+import ru.practicum.explore_with_me.dto.request.ConfirmedRequestsCount;
+import ru.practicum.explore_with_me.exception.EnrichmentException;
+import ru.practicum.explore_with_me.model.Event;
+import ru.practicum.explore_with_me.repository.CommentRepository;
+import ru.practicum.explore_with_me.repository.ParticipationRequestRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Дополнение событий просмотрами, числом подтверждённых заявок и комментариев.
+ * Этапы независимы и выполняются параллельно на ограниченном пуле, поэтому ответ ждёт самый медленный этап,
+ * а не сумму всех. Если этап просмотров не уложился в свой таймаут, завершился ошибкой или не принят заполненным
+ * пулом, просмотры равны нулю, а остальные значения ответа остаются точными. Этапы с запросами к базе в таком
+ * случае завершают запрос ошибкой 503: ноль заявок или комментариев был бы неверным ответом, а не устаревшим.
+ * Этапы с запросами к базе берут своё соединение из пула, пока поток запроса держит своё (открытая транзакция
+ * или open-in-view), поэтому пул соединений должен вмещать все потоки запросов и пул этапов одновременно:
+ * иначе при нагрузке этапы ждут соединения до таймаута. Нехватка проверяется при запуске.
+ * По таймауту задача этапа отменяется с прерыванием потока: блокирующий вызов сервиса статистики при прерывании
+ * отменяет HTTP-запрос и освобождает поток пула, а сверху его ограничивает stats-server.read-timeout-ms.
+ * Запрос к базе JDBC прервать не может, поток этапа освобождается после его завершения.
+ */
+@Slf4j
+@Component
+public class EventEnricher {
+    private final ViewsCache viewsCache;
+    private final ParticipationRequestRepository requestRepository;
+    private final CommentRepository commentRepository;
+    private final ThreadPoolExecutor executor;
+    private final long viewsTimeoutMs;
+    private final long dbTimeoutMs;
+
+    public EventEnricher(ViewsCache viewsCache, ParticipationRequestRepository requestRepository,
+                         CommentRepository commentRepository,
+                         @Value("${event-enrichment.pool-size:8}") int poolSize,
+                         @Value("${event-enrichment.queue-capacity:100}") int queueCapacity,
+                         @Value("${event-enrichment.views-timeout-ms:1000}") long viewsTimeoutMs,
+                         @Value("${event-enrichment.db-timeout-ms:2000}") long dbTimeoutMs,
+                         @Value("${spring.datasource.hikari.maximum-pool-size:10}") int dbPoolSize,
+                         @Value("${server.tomcat.threads.max:200}") int requestThreads) {
+        this.viewsCache = viewsCache;
+        this.requestRepository = requestRepository;
+        this.commentRepository = commentRepository;
+        this.viewsTimeoutMs = viewsTimeoutMs;
+        this.dbTimeoutMs = dbTimeoutMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // при заполненной очереди этап отклоняется сразу: в потоке запроса он не был бы ограничен таймаутом
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "event-enrichment-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        if (dbPoolSize < requestThreads + poolSize) {
+            log.warn("Пул соединений ({}) меньше числа потоков запросов ({}) и потоков дополнения событий ({}): "
+                    + "при нагрузке этапы с запросами к базе будут ждать соединения до таймаута",
+                    dbPoolSize, requestThreads, poolSize);
+        }
+    }
+
+    /**
+     * Загружает значения указанных этапов для событий; этапы, не вошедшие в stages, не меняют события.
+     */
+    public Enrichment load(List<Long> eventIds, Set<Stage> stages) {
+        if (eventIds.isEmpty()) {
+            return new Enrichment(null, null, null);
+        }
+        CompletableFuture<LongIntHashMap> views = stages.contains(Stage.VIEWS)
+                ? stage(Stage.VIEWS, eventIds, this::loadViews, viewsTimeoutMs, false) : null;
+        CompletableFuture<LongIntHashMap> confirmedRequests = stages.contains(Stage.CONFIRMED_REQUESTS)
+                ? stage(Stage.CONFIRMED_REQUESTS, eventIds, this::loadConfirmedRequests, dbTimeoutMs, true) : null;
+        CompletableFuture<LongIntHashMap> comments = stages.contains(Stage.COMMENTS)
+                ? stage(Stage.COMMENTS, eventIds, this::loadComments, dbTimeoutMs, true) : null;
+        return new Enrichment(join(views), join(confirmedRequests), join(comments));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Запускает этап; при required ошибка этапа завершает будущее исключением EnrichmentException,
+     * иначе этап отдаёт пустые значения.
+     */
+    private CompletableFuture<LongIntHashMap> stage(Stage stage, List<Long> eventIds,
+                                                    Function<List<Long>, LongIntHashMap> loader, long timeoutMs,
+                                                    boolean required) {
+        CompletableFuture<LongIntHashMap> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    future.complete(loader.apply(eventIds));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            String message = String.format("Этап %s для %d событий отклонён: очередь пула заполнена",
+                    stage, eventIds.size());
+            if (required) {
+                return CompletableFuture.failedFuture(new EnrichmentException(message));
+            }
+            log.warn(message);
+            return CompletableFuture.completedFuture(new LongIntHashMap());
+        }
+        return future
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        task.cancel(true);
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    String message = cause instanceof TimeoutException
+                            ? String.format("Этап %s не уложился в %d мс для %d событий", stage, timeoutMs,
+                            eventIds.size())
+                            : String.format("Ошибка этапа %s для %d событий: %s", stage, eventIds.size(),
+                            cause.getMessage());
+                    if (required) {
+                        throw new EnrichmentException(message);
+                    }
+                    log.warn(message);
+                    return new LongIntHashMap();
+                });
+    }
+
+    private LongIntHashMap join(CompletableFuture<LongIntHashMap> future) {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof EnrichmentException) {
+                throw (EnrichmentException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private LongIntHashMap loadViews(List<Long> eventIds) {
+        Map<Long, Integer> loaded = viewsCache.getAll(eventIds);
+        LongIntHashMap result = new LongIntHashMap(loaded.size());
+        loaded.forEach(result::put);
+        return result;
+    }
+
+    private LongIntHashMap loadConfirmedRequests(List<Long> eventIds) {
+        LongIntHashMap result = new LongIntHashMap(eventIds.size());
+        for (ConfirmedRequestsCount confirmed : requestRepository.countConfirmedRequests(eventIds)) {
+            result.put(confirmed.getEventId(), confirmed.getCount().intValue());
+        }
+        return result;
+    }
+
+    private LongIntHashMap loadComments(List<Long> eventIds) {
+        LongIntHashMap result = new LongIntHashMap(eventIds.size());
+        for (CommentEvent comments : commentRepository.getCommentsEvents(eventIds)) {
+            result.put(comments.getEventId(), comments.getCommentCount().intValue());
+        }
+        return result;
+    }
+
+    public enum Stage {
+        VIEWS,
+        CONFIRMED_REQUESTS,
+        COMMENTS
+    }
+
+    /**
+     * Значения этапов по id события; null — этап не запрашивался.
+     */
+    public static class Enrichment {
+        private final LongIntHashMap views;
+        private final LongIntHashMap confirmedRequests;
+        private final LongIntHashMap comments;
+
+        private Enrichment(LongIntHashMap views, LongIntHashMap confirmedRequests, LongIntHashMap comments) {
+            this.views = views;
+            this.confirmedRequests = confirmedRequests;
+            this.comments = comments;
+        }
+
+        public List<Event> fill(List<Event> events) {
+            for (Event event : events) {
+                if (views != null) {
+                    event.setViews(views.getOrDefault(event.getId(), 0));
+                }
+                if (confirmedRequests != null) {
+                    event.setConfirmedRequests(confirmedRequests.getOrDefault(event.getId(), 0));
+                }
+                if (comments != null) {
+                    event.setComments((long) comments.getOrDefault(event.getId(), 0));
+                }
+            }
+            return events;
+        }
+
+        public List<EventShortDto> fillShortDtos(List<EventShortDto> events) {
+            for (EventShortDto event : events) {
+                if (views != null) {
+                    event.setViews(views.getOrDefault(event.getId(), 0));
+                }
+                if (confirmedRequests != null) {
+                    event.setConfirmedRequests(confirmedRequests.getOrDefault(event.getId(), 0));
+                }
+                if (comments != null) {
+                    event.setComments((long) comments.getOrDefault(event.getId(), 0));
+                }
+            }
+            return events;
+        }
+    }
+}
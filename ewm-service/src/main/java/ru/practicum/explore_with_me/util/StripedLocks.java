@@ -0,0 +1,26 @@
+package ru.practicum.explore_with_me.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Фиксированный набор блокировок, между которыми распределяются id.
+ * Операции с одним id всегда попадают на одну блокировку, с разными — чаще всего на разные.
+ */
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    public ReentrantLock get(long id) {
+        long hash = id * 0x9e3779b97f4a7c15L;
+        return locks[(int) (hash ^ (hash >>> 32)) & mask];
+    }
+}
@@ -0,0 +1,198 @@
+package ru.practicum.explore_with_me.util;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.explore_with_me.WebClientService;
+import ru.practicum.explore_with_me.dto.StatsResponseDto;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Кэш просмотров событий. Отсутствующие события загружаются из сервиса статистики одним запросом на всю пачку,
+ * а записи старше refresh отдаются сразу и обновляются в фоне. Просмотры и так считаются с задержкой,
+ * поэтому слегка устаревшее значение допустимо. Метрики кэша публикуются в Actuator под именем event-views.
+ * Фоновые обновления собираются за короткую паузу и отправляются пачками на отдельном потоке: страница
+ * устаревших событий обновляется одним запросом к сервису статистики, а не запросом на каждое событие,
+ * и блокирующие HTTP-вызовы не занимают общий ForkJoinPool.
+ */
+@Slf4j
+@Component
+public class ViewsCache {
+    private static final String EVENT_URI = "/events/";
+    private static final int MAX_ID_DIGITS = 18;
+    private static final LocalDateTime STATS_START = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final long REFRESH_BATCH_DELAY_MS = 20;
+    private static final int REFRESH_BATCH_SIZE = 500;
+
+    private final WebClientService statsClient;
+    private final LoadingCache<Long, Integer> views;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "views-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Long, CompletableFuture<Integer>> pendingRefresh = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    public ViewsCache(WebClientService statsClient, MeterRegistry meterRegistry,
+                      @Value("${views-cache.maximum-size:100000}") long maximumSize,
+                      @Value("${views-cache.refresh-after-write:30s}") Duration refreshAfterWrite,
+                      @Value("${views-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.statsClient = statsClient;
+        this.views = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfterWrite)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                // обслуживание кэша в вызывающем потоке, обновления выполняет refresher
+                .executor(Runnable::run)
+                .build(new ViewsLoader());
+        CaffeineCacheMetrics.monitor(meterRegistry, views, "event-views");
+    }
+
+    /**
+     * Просмотры указанных событий; события без просмотров получают 0.
+     */
+    public Map<Long, Integer> getAll(Collection<Long> eventIds) {
+        return views.getAll(eventIds);
+    }
+
+    /**
+     * События, у которых были просмотры в [since, until], одним запросом по префиксу /events/*; без since —
+     * за всё время. Запрос без уникальности IP, поэтому сервис статистики отвечает по свёрнутым корзинам.
+     * Ответ читается потоком, кэш не меняется.
+     */
+    public List<Long> findViewedEvents(LocalDateTime since, LocalDateTime until) {
+        List<Long> result = new ArrayList<>();
+        statsClient.streamStats(since == null ? STATS_START : since, until, List.of(EVENT_URI + "*"), false)
+                .doOnNext(stat -> {
+                    String uri = stat.getUri();
+                    // под префиксом есть и другие эндпоинты, например /events/nearby
+                    if (isEventUri(uri)) {
+                        result.add(Long.parseLong(uri, EVENT_URI.length(), uri.length(), 10));
+                    }
+                })
+                .blockLast();
+        log.debug("Найдено {} событий с просмотрами по префиксу", result.size());
+        return result;
+    }
+
+    /**
+     * Загружает просмотры событий из сервиса статистики, минуя кэш, и обновляет их в кэше.
+     */
+    public Map<Long, Integer> refresh(Collection<Long> eventIds) {
+        Map<Long, Integer> result = load(eventIds);
+        views.putAll(result);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private CompletableFuture<Integer> scheduleRefresh(Long eventId) {
+        CompletableFuture<Integer> future = pendingRefresh.computeIfAbsent(eventId, id -> new CompletableFuture<>());
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refresher.schedule(this::refreshPending, REFRESH_BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Обновляет накопленные события пачками. При ошибке обновление завершается исключением,
+     * и кэш оставляет прежнее значение до следующей попытки.
+     */
+    private void refreshPending() {
+        // флаг сбрасывается до чтения очереди: событие, добавленное позже, назначит новый запуск
+        refreshScheduled.set(false);
+        List<Long> eventIds = new ArrayList<>(pendingRefresh.keySet());
+        for (int from = 0; from < eventIds.size(); from += REFRESH_BATCH_SIZE) {
+            List<Long> batch = eventIds.subList(from, Math.min(from + REFRESH_BATCH_SIZE, eventIds.size()));
+            try {
+                Map<Long, Integer> loaded = load(batch);
+                for (Long eventId : batch) {
+                    pendingRefresh.remove(eventId).complete(loaded.get(eventId));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обновить просмотры {} событий: {}", batch.size(), e.getMessage());
+                for (Long eventId : batch) {
+                    pendingRefresh.remove(eventId).completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private Map<Long, Integer> load(Iterable<? extends Long> eventIds) {
+        // id события по uri, чтобы не разбирать uri из ответа обратно в число
+        Map<String, Long> eventIdsByUri = new HashMap<>();
+        Map<Long, Integer> result = new HashMap<>();
+        for (Long eventId : eventIds) {
+            eventIdsByUri.put(EVENT_URI + eventId, eventId);
+            result.put(eventId, 0);
+        }
+        List<StatsResponseDto> stats = statsClient.getStats(STATS_START, LocalDateTime.now(),
+                new ArrayList<>(eventIdsByUri.keySet()), true);
+        if (stats != null) {
+            for (StatsResponseDto stat : stats) {
+                Long eventId = eventIdsByUri.get(stat.getUri());
+                if (eventId != null) {
+                    result.put(eventId, stat.getHits());
+                }
+            }
+        }
+        log.debug("Загружены просмотры {} событий", result.size());
+        return result;
+    }
+
+    private static boolean isEventUri(String uri) {
+        int digits = uri.length() - EVENT_URI.length();
+        if (digits <= 0 || digits > MAX_ID_DIGITS) {
+            return false;
+        }
+        for (int i = EVENT_URI.length(); i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class ViewsLoader implements CacheLoader<Long, Integer> {
+        @Override
+        public Integer load(Long eventId) {
+            return ViewsCache.this.load(List.of(eventId)).get(eventId);
+        }
+
+        @Override
+        public Map<Long, Integer> loadAll(Iterable<? extends Long> eventIds) {
+            return ViewsCache.this.load(eventIds);
+        }
+
+        @Override
+        public CompletableFuture<Integer> asyncReload(Long eventId, Integer oldValue, Executor executor) {
+            return scheduleRefresh(eventId);
+        }
+    }
+}
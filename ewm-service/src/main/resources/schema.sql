@@ -39,10 +39,28 @@ create table if not exists events
     request_moderation boolean                                 not null,
     state              varchar(64)                             not null,
     title              varchar(2048)                           not null,
+    confirmed_requests integer      default 0                  not null,
     constraint pk_events primary key (event_id),
     constraint fk_events_cat foreign key (cat_id) references categories (cat_id)
     );
 
+alter table events add column if not exists confirmed_requests integer default 0 not null;
+
+create index if not exists idx_events_event_date_id on events (event_date, event_id);
+
+create index if not exists idx_events_lat_lon on events (lat, lon);
+
+alter table events add column if not exists indexed_views integer default 0 not null;
+
+create index if not exists idx_events_indexed_views on events (indexed_views desc, event_id);
+
+-- выражение должно совпадать с функциями fts_match и fts_rank из EwmPostgreSQLDialect
+create index if not exists idx_events_fts on events using gin (to_tsvector('russian', annotation || ' ' || description));
+
+-- редкие слова попадают в статистику индекса только с большей выборкой, иначе планировщик считает их частыми,
+-- читает события по дате и вызывает to_tsvector для каждой строки вместо поиска по индексу
+alter index idx_events_fts alter column 1 set statistics 1000;
+
 create table if not exists requests
 (
     req_id      bigint generated by default as identity not null,
@@ -55,6 +73,8 @@ create table if not exists requests
     constraint fk_req_user foreign key (user_id) references users (user_id)
     );
 
+-- уникальный индекс uq_requests_event_user создаёт однократная миграция RequestsMigration
+
 create table if not exists compilations
 (
     compilation_id bigint generated by default as identity not null,
@@ -0,0 +1,103 @@
+package ru.practicum.explore_with_me.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.explore_with_me.EwmMain;
+
+/**
+ * Контекст основного сервиса для бенчмарков: без веб-сервера и с профилем benchmark,
+ * то есть с отдельной базой ewmdb_bench. События записываются один раз и переиспользуются следующими запусками.
+ */
+public final class EwmBenchmarkContext implements AutoCloseable {
+    public static final String RARE_WORD = "джаз";
+    public static final String COMMON_WORD = "концерт";
+    public static final String ABSENT_WORD = "фламенко";
+
+    private static final String INITIATOR_EMAIL = "initiator@benchmark.ewm";
+    private static final int CATEGORIES = 20;
+    private static final String WORDS = "array['концерт', 'выставка', 'лекция', 'город', 'музей', 'театр', 'спектакль', "
+            + "'фестиваль', 'ярмарка', 'прогулка', 'экскурсия', 'встреча', 'клуб', 'книга', 'кино', 'фильм', "
+            + "'музыка', 'оркестр', 'хор', 'песня', 'танец', 'балет', 'опера', 'художник', 'картина', 'парк', "
+            + "'сад', 'река', 'набережная', 'площадь', 'улица', 'история', 'наука', 'техника', 'робот', 'игра', "
+            + "'турнир', 'шахматы', 'футбол', 'бег', 'велосипед', 'йога', 'кухня', 'ужин', 'завтрак', 'кофе', "
+            + "'вино', 'сыр', 'рынок', 'мастер', 'класс', 'урок', 'школа', 'дети', 'семья', 'друзья', 'вечер', "
+            + "'утро', 'лето', 'зима', 'весна', 'осень', 'праздник', 'новый', 'большой', 'старый', 'летний', "
+            + "'зимний', 'городской', 'детский', 'открытый', 'бесплатный', 'весёлый', 'тихий', 'яркий', "
+            + "'интересный', 'знаменитый', 'молодой', 'местный', 'лучший']";
+
+    private final ConfigurableApplicationContext context;
+
+    private EwmBenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static EwmBenchmarkContext start() {
+        return new EwmBenchmarkContext(new SpringApplicationBuilder(EwmMain.class)
+                .web(WebApplicationType.NONE)
+                .profiles("benchmark")
+                .run());
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    /**
+     * Записывает count опубликованных событий одного инициатора: аннотация из 20 и описание из 80 случайных слов,
+     * RARE_WORD есть в каждом тысячном событии, COMMON_WORD — в большинстве, ABSENT_WORD нет ни в одном.
+     * Точки равномерно разбросаны
+     * по прямоугольнику 50–60° с. ш., 30–60° в. д. Если у инициатора уже ровно столько событий,
+     * данные не пересоздаются.
+     */
+    public void seedEvents(int count) {
+        JdbcTemplate jdbcTemplate = jdbcTemplate();
+        jdbcTemplate.update("insert into users (email, username) values (?, 'Бенчмарк') on conflict do nothing",
+                INITIATOR_EMAIL);
+        Long initiatorId = jdbcTemplate.queryForObject("select user_id from users where email = ?", Long.class,
+                INITIATOR_EMAIL);
+        Long existing = jdbcTemplate.queryForObject("select count(*) from events where initiator_id = ?",
+                Long.class, initiatorId);
+        if (existing != null && existing == count) {
+            return;
+        }
+        jdbcTemplate.update("delete from events where initiator_id = ?", initiatorId);
+        for (int i = 0; i < CATEGORIES; i++) {
+            jdbcTemplate.update("insert into categories (cat_name) values (?) on conflict do nothing",
+                    "Бенчмарк " + i);
+        }
+        jdbcTemplate.update("insert into events (annotation, cat_id, created_on, description, event_date, "
+                        + "initiator_id, lat, lon, paid, participant_limit, published_on, request_moderation, state, "
+                        + "title) "
+                        + "select " + randomText(20)
+                        + " || case when g % 1000 = 0 then ' " + RARE_WORD + "' else '' end, "
+                        + "c.ids[1 + g % array_length(c.ids, 1)], now(), "
+                        + randomText(80) + ", "
+                        + "now() + interval '1 day' + (g % 365) * interval '1 day', ?, 50 + random() * 10, "
+                        + "30 + random() * 30, g % 2 = 0, 0, now(), false, 'PUBLISHED', 'Событие ' || g "
+                        + "from generate_series(1, ?) g, (select " + WORDS + " as words) v, "
+                        + "(select array_agg(cat_id) as ids from categories where cat_name like 'Бенчмарк %') c",
+                initiatorId, count);
+        jdbcTemplate.execute("analyze events");
+    }
+
+    /**
+     * Выражение из words случайных слов словаря v.words, своё для каждой строки g.
+     */
+    private static String randomText(int words) {
+        // агрегат по столбцу подзапроса: по одним внешним столбцам string_agg считался бы во внешнем запросе
+        return "(select string_agg(w.word, ' ') from (select v.words[1 + floor(random() "
+                + "* array_length(v.words, 1))::int] as word from generate_series(1, " + words + ") "
+                + "where g > 0) w)";
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,96 @@
+package ru.practicum.explore_with_me.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import ru.practicum.explore_with_me.dto.event.EventShortDto;
+import ru.practicum.explore_with_me.dto.filter.EventFilter;
+import ru.practicum.explore_with_me.dto.filter.GeoFilter;
+import ru.practicum.explore_with_me.model.SearchMode;
+import ru.practicum.explore_with_me.service.event.EventService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Первая страница /events/nearby по 1M событий: поиск в радиусе и в прямоугольнике того же размера
+ * через индекс (lat, lon) против расчёта расстояния до каждого опубликованного события без индекса.
+ * База задаётся переменной окружения EWM_BENCHMARK_DB_URL, запуск описан в README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class GeoSearchBenchmark {
+    private static final int EVENTS = 1_000_000;
+    private static final double LAT = 55.75;
+    private static final double LON = 37.61;
+    private static final double KM_PER_DEGREE = 111.19;
+    private static final String FULL_SCAN = "select event_id from ("
+            + "select event_id, 12742.0 * asin(sqrt(power(sin(radians(? - lat) / 2), 2) "
+            + "+ power(sin(radians(? - lon) / 2), 2) * cos(radians(lat)) * cos(radians(?)))) as distance "
+            + "from events where state = 'PUBLISHED') e "
+            + "where distance <= ? order by distance limit 10";
+
+    @Param({"5", "50"})
+    private double radiusKm;
+
+    private EwmBenchmarkContext context;
+    private EventService eventService;
+    private JdbcTemplate jdbcTemplate;
+    private MockHttpServletRequest request;
+    private GeoFilter radius;
+    private GeoFilter box;
+
+    @Setup
+    public void setUp() {
+        context = EwmBenchmarkContext.start();
+        context.seedEvents(EVENTS);
+        eventService = context.getBean(EventService.class);
+        jdbcTemplate = context.jdbcTemplate();
+        request = new MockHttpServletRequest("GET", "/events/nearby");
+        radius = GeoFilter.builder().lat(LAT).lon(LON).radius(radiusKm).build();
+        double latDelta = radiusKm / KM_PER_DEGREE;
+        double lonDelta = radiusKm / (KM_PER_DEGREE * Math.cos(Math.toRadians(LAT)));
+        box = GeoFilter.builder()
+                .minLat(LAT - latDelta).maxLat(LAT + latDelta)
+                .minLon(LON - lonDelta).maxLon(LON + lonDelta)
+                .build();
+        Integer inBox = jdbcTemplate.queryForObject("select count(*) from events where lat between ? and ? "
+                + "and lon between ? and ?", Integer.class, LAT - latDelta, LAT + latDelta, LON - lonDelta,
+                LON + lonDelta);
+        System.out.printf("%nСобытий в прямоугольнике вокруг круга %.0f км: %d%n", radiusKm, inBox);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<EventShortDto> radius() {
+        return eventService.getEventsNearby(radius, new EventFilter(), SearchMode.LIKE, 0, 10, request);
+    }
+
+    @Benchmark
+    public List<EventShortDto> box() {
+        return eventService.getEventsNearby(box, new EventFilter(), SearchMode.LIKE, 0, 10, request);
+    }
+
+    /**
+     * То же условие на расстояние без прямоугольника вокруг круга: индекс (lat, lon) не используется.
+     */
+    @Benchmark
+    public List<Long> fullScan() {
+        return jdbcTemplate.queryForList(FULL_SCAN, Long.class, LAT, LON, LAT, radiusKm);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GeoSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.explore_with_me.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import ru.practicum.explore_with_me.dto.event.EventShortDto;
+import ru.practicum.explore_with_me.model.EventSort;
+import ru.practicum.explore_with_me.model.SearchMode;
+import ru.practicum.explore_with_me.service.event.EventService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Первая страница публичного поиска /events?text= по 1M событий: подстрока через like против полнотекстового
+ * поиска по GIN-индексу. Редкое слово есть в каждом тысячном событии, частое — в большинстве, отсутствующего нет
+ * ни в одном: без индекса страница не набирается и условие проверяется для всех событий.
+ * База задаётся переменной окружения EWM_BENCHMARK_DB_URL, запуск описан в README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TextSearchBenchmark {
+    private static final int EVENTS = 1_000_000;
+
+    @Param({"LIKE", "FULLTEXT"})
+    private SearchMode searchMode;
+
+    @Param({EwmBenchmarkContext.RARE_WORD, EwmBenchmarkContext.COMMON_WORD, EwmBenchmarkContext.ABSENT_WORD})
+    private String text;
+
+    private EwmBenchmarkContext context;
+    private EventService eventService;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        context = EwmBenchmarkContext.start();
+        context.seedEvents(EVENTS);
+        eventService = context.getBean(EventService.class);
+        request = new MockHttpServletRequest("GET", "/events");
+        int found = search().size();
+        System.out.printf("%nНа первой странице %d событий%n", found);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<EventShortDto> search() {
+        return eventService.getEventsForAll(text, null, null, null, null, false, EventSort.EVENT_DATE, searchMode, 0, 10, null,
+                request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TextSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
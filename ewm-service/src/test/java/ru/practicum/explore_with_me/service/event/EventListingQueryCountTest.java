@@ -0,0 +1,142 @@
+package ru.practicum.explore_with_me.service.event;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.explore_with_me.dto.compilation.CompilationDto;
+import ru.practicum.explore_with_me.dto.event.EventFullDto;
+import ru.practicum.explore_with_me.service.compilation.CompilationService;
+import ru.practicum.explore_with_me.service.request.ConfirmedRequestsReconciler;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число SQL-запросов на страницу списка событий и подборок не зависит от размера страницы:
+ * категории и инициаторы загружаются в том же запросе, что и события, а не по одному на событие.
+ * Статистика Hibernate общая для всех потоков, поэтому фоновые задачи с запросами к базе заменены заглушками.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "EWM_TEST_DB_URL", matches = ".+")
+class EventListingQueryCountTest {
+    private static final int EVENTS = 24;
+    private static final int COMPILATIONS = 6;
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private CompilationService compilationService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @MockBean
+    private ConfirmedRequestsReconciler confirmedRequestsReconciler;
+    @MockBean
+    private EventViewsIndexer eventViewsIndexer;
+
+    private final String tag = UUID.randomUUID().toString();
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> categoryIds = new ArrayList<>();
+    private final List<Long> eventIds = new ArrayList<>();
+    private final List<Long> compilationIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // у каждого события свои инициатор и категория: ленивая загрузка дала бы по два запроса на событие
+        for (int i = 0; i < EVENTS; i++) {
+            Long userId = jdbcTemplate.queryForObject("insert into users (email, username) values (?, ?) "
+                    + "returning user_id", Long.class, "user" + i + "-" + tag + "@mail.ru", "User " + i);
+            Long categoryId = jdbcTemplate.queryForObject("insert into categories (cat_name) values (?) "
+                    + "returning cat_id", Long.class, "Категория " + i + " " + tag);
+            Long eventId = jdbcTemplate.queryForObject("insert into events (annotation, cat_id, created_on, "
+                            + "description, event_date, initiator_id, lat, lon, paid, participant_limit, "
+                            + "published_on, request_moderation, state, title) values ('Аннотация события', ?, "
+                            + "now(), 'Описание события', now() + interval '30 days', ?, 55.75, 37.61, false, 0, "
+                            + "now(), false, 'PUBLISHED', ?) returning event_id",
+                    Long.class, categoryId, userId, "Событие " + i);
+            userIds.add(userId);
+            categoryIds.add(categoryId);
+            eventIds.add(eventId);
+        }
+        for (int i = 0; i < COMPILATIONS; i++) {
+            Long compilationId = jdbcTemplate.queryForObject("insert into compilations (pinned, title) "
+                    + "values (false, ?) returning compilation_id", Long.class, "Подборка " + i + " " + tag);
+            for (int j = 0; j < EVENTS / COMPILATIONS; j++) {
+                jdbcTemplate.update("insert into compilations_events (compilation_id, event_id) values (?, ?)",
+                        compilationId, eventIds.get(i * (EVENTS / COMPILATIONS) + j));
+            }
+            compilationIds.add(compilationId);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Long compilationId : compilationIds) {
+            jdbcTemplate.update("delete from compilations_events where compilation_id = ?", compilationId);
+            jdbcTemplate.update("delete from compilations where compilation_id = ?", compilationId);
+        }
+        for (int i = 0; i < EVENTS; i++) {
+            jdbcTemplate.update("delete from events where event_id = ?", eventIds.get(i));
+            jdbcTemplate.update("delete from categories where cat_id = ?", categoryIds.get(i));
+            jdbcTemplate.update("delete from users where user_id = ?", userIds.get(i));
+        }
+    }
+
+    @Test
+    void adminEventPageRunsConstantNumberOfStatements() {
+        long small = countStatements(() -> getEventsForAdmin(4));
+        long large = countStatements(() -> getEventsForAdmin(EVENTS));
+
+        // события с категориями и инициаторами, число подтверждённых заявок
+        assertThat(small).isEqualTo(2);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void compilationPageRunsConstantNumberOfStatements() {
+        long small = countStatements(() -> getCompilations(2));
+        long large = countStatements(() -> getCompilations(COMPILATIONS));
+
+        // страница подборок, связи с событиями, краткие события, число подтверждённых заявок
+        assertThat(small).isEqualTo(4);
+        assertThat(large).isEqualTo(small);
+    }
+
+    private List<EventFullDto> getEventsForAdmin(int size) {
+        List<EventFullDto> events = eventService.getEventsForAdmin(userIds, null, null, null, null, null, 0, size,
+                null);
+        assertThat(events).hasSize(size);
+        events.forEach(event -> assertThat(event.getInitiator().getName()).isNotNull());
+        events.forEach(event -> assertThat(event.getCategory().getName()).isNotNull());
+        return events;
+    }
+
+    private List<CompilationDto> getCompilations(int size) {
+        List<CompilationDto> compilations = compilationService.getCompilations(false, 0, size);
+        assertThat(compilations).hasSize(size);
+        compilations.forEach(compilation -> assertThat(compilation.getEvents()).hasSize(EVENTS / COMPILATIONS));
+        return compilations;
+    }
+
+    private long countStatements(Supplier<?> listing) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        listing.get();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,241 @@
+package ru.practicum.explore_with_me.service.request;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.explore_with_me.exception.ErrorHandler;
+import ru.practicum.explore_with_me.exception.OperationFailedException;
+import ru.practicum.explore_with_me.mapper.ParticipationRequestMapper;
+import ru.practicum.explore_with_me.repository.EventRepository;
+import ru.practicum.explore_with_me.repository.ParticipationRequestRepository;
+import ru.practicum.explore_with_me.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочная проверка записи на событие: тысячи одновременных заявок не превышают лимит участников
+ * и не создают повторных заявок одного пользователя.
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "EWM_TEST_DB_URL", matches = ".+")
+class ParticipationRequestConcurrencyTest {
+    private static final int THREADS = 32;
+    private static final int USERS = 2000;
+    private static final int LIMIT = 100;
+
+    @Autowired
+    private ParticipationRequestService requestService;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ParticipationRequestRepository participationRequestRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ParticipationRequestMapper requestMapper;
+
+    private final String tag = UUID.randomUUID().toString();
+    private List<Long> userIds;
+    private Long categoryId;
+    private final List<Long> eventIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userIds = jdbcTemplate.queryForList("insert into users (email, username) "
+                + "select 'user' || g || '-' || ? || '@mail.ru', 'User ' || g from generate_series(1, ?) g "
+                + "returning user_id", Long.class, tag, USERS + 1);
+        categoryId = jdbcTemplate.queryForObject("insert into categories (cat_name) values (?) returning cat_id",
+                Long.class, "Категория " + tag);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Long eventId : eventIds) {
+            jdbcTemplate.update("delete from requests where event_id = ?", eventId);
+            jdbcTemplate.update("delete from events where event_id = ?", eventId);
+        }
+        jdbcTemplate.update("delete from categories where cat_id = ?", categoryId);
+        jdbcTemplate.update("delete from users where email like ?", "%-" + tag + "@mail.ru");
+    }
+
+    @Test
+    void participantLimitIsNeverExceeded() throws InterruptedException {
+        Long eventId = createPublishedEvent(LIMIT);
+        List<Long> requesters = userIds.subList(1, userIds.size());
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Throwable> unexpected = new CopyOnWriteArrayList<>();
+
+        long elapsedNanos = runConcurrently(requesters.size(), i -> {
+            try {
+                requestService.create(requesters.get(i), eventId);
+                created.incrementAndGet();
+            } catch (OperationFailedException e) {
+                rejected.incrementAndGet();
+            } catch (RuntimeException e) {
+                unexpected.add(e);
+            }
+        });
+        log.info("{} заявок на событие с лимитом {} обработано за {} мс, {} заявок/с", requesters.size(), LIMIT,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), requesters.size() * 1_000_000_000L / elapsedNanos);
+
+        assertThat(unexpected).isEmpty();
+        assertThat(created.get()).isEqualTo(LIMIT);
+        assertThat(rejected.get()).isEqualTo(requesters.size() - LIMIT);
+        assertThat(countRequests(eventId, "CONFIRMED")).isEqualTo(LIMIT);
+        assertThat(countRequests(eventId, null)).isEqualTo(LIMIT);
+        assertThat(eventRepository.getConfirmedRequests(eventId)).isEqualTo(LIMIT);
+    }
+
+    @Test
+    void userGetsOnlyOneRequestPerEvent() throws InterruptedException {
+        Long eventId = createPublishedEvent(0);
+        Long userId = userIds.get(1);
+        int attempts = 500;
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Throwable> unexpected = new CopyOnWriteArrayList<>();
+
+        runConcurrently(attempts, i -> {
+            try {
+                requestService.create(userId, eventId);
+                created.incrementAndGet();
+            } catch (OperationFailedException e) {
+                rejected.incrementAndGet();
+            } catch (RuntimeException e) {
+                unexpected.add(e);
+            }
+        });
+
+        assertThat(unexpected).isEmpty();
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(attempts - 1);
+        assertThat(countRequests(eventId, null)).isEqualTo(1);
+        assertThat(eventRepository.getConfirmedRequests(eventId)).isEqualTo(1);
+    }
+
+    /**
+     * Каждая попытка идёт через свой экземпляр сервиса со своими блокировками, как при нескольких экземплярах:
+     * повторные заявки не упорядочены блокировкой события, и единственную заявку держит уникальный индекс.
+     */
+    @Test
+    void uniqueIndexHoldsOneRequestPerUserWithoutInstanceLocks() throws InterruptedException {
+        Long eventId = createPublishedEvent(0);
+        Long userId = userIds.get(1);
+        int attempts = 200;
+        ErrorHandler errorHandler = new ErrorHandler();
+        AtomicInteger created = new AtomicInteger();
+        List<HttpStatus> rejections = new CopyOnWriteArrayList<>();
+        List<Throwable> unexpected = new CopyOnWriteArrayList<>();
+
+        runConcurrently(attempts, i -> {
+            ParticipationRequestService instance = new ParticipationRequestServiceImpl(
+                    participationRequestRepository, userRepository, requestMapper, eventRepository,
+                    transactionTemplate);
+            try {
+                instance.create(userId, eventId);
+                created.incrementAndGet();
+            } catch (OperationFailedException e) {
+                rejections.add(errorHandler.handleOperationFailedException(e).getStatus());
+            } catch (RuntimeException e) {
+                unexpected.add(e);
+            }
+        });
+
+        assertThat(unexpected).isEmpty();
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(rejections).hasSize(attempts - 1).containsOnly(HttpStatus.CONFLICT);
+        assertThat(countRequests(eventId, null)).isEqualTo(1);
+        assertThat(eventRepository.getConfirmedRequests(eventId)).isEqualTo(1);
+    }
+
+    /**
+     * Без блокировок экземпляра, как при нескольких экземплярах сервиса: лимит держит условный update.
+     */
+    @Test
+    void conditionalIncrementHoldsLimitWithoutInstanceLocks() throws InterruptedException {
+        Long eventId = createPublishedEvent(LIMIT);
+        AtomicInteger incremented = new AtomicInteger();
+
+        runConcurrently(USERS, i -> incremented.addAndGet(
+                transactionTemplate.execute(status -> eventRepository.incrementConfirmedRequests(eventId))));
+
+        assertThat(incremented.get()).isEqualTo(LIMIT);
+        assertThat(eventRepository.getConfirmedRequests(eventId)).isEqualTo(LIMIT);
+    }
+
+    private Long createPublishedEvent(int participantLimit) {
+        Long eventId = jdbcTemplate.queryForObject("insert into events (annotation, cat_id, created_on, "
+                        + "description, event_date, initiator_id, lat, lon, paid, participant_limit, published_on, "
+                        + "request_moderation, state, title) values ('Аннотация нагрузочного теста', ?, now(), "
+                        + "'Описание нагрузочного теста', now() + interval '30 days', ?, 55.75, 37.61, false, ?, "
+                        + "now(), false, 'PUBLISHED', 'Нагрузочный тест') returning event_id",
+                Long.class, categoryId, userIds.get(0), participantLimit);
+        eventIds.add(eventId);
+        return eventId;
+    }
+
+    private int countRequests(Long eventId, String status) {
+        Integer count = status == null
+                ? jdbcTemplate.queryForObject("select count(*) from requests where event_id = ?", Integer.class,
+                eventId)
+                : jdbcTemplate.queryForObject("select count(*) from requests where event_id = ? and status = ?",
+                Integer.class, eventId, status);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Запускает tasks задач на THREADS потоках одновременно и ждёт их завершения.
+     *
+     * @return время выполнения в наносекундах
+     */
+    private long runConcurrently(int tasks, IntConsumerTask task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            int index = i;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    task.run(index);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        assertThat(done.await(2, TimeUnit.MINUTES)).isTrue();
+        long elapsed = System.nanoTime() - startedAt;
+        executor.shutdown();
+        return elapsed;
+    }
+
+    @FunctionalInterface
+    private interface IntConsumerTask {
+        void run(int index);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.practicum.explore_with_me.util;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.explore_with_me.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCursorTest {
+
+    @Test
+    void encodedCursorsDecodeBack() {
+        LocalDateTime eventDate = LocalDateTime.of(2024, 5, 1, 18, 30);
+
+        EventCursor byDate = EventCursor.decode(EventCursor.byEventDate(eventDate, 7L).encode());
+        EventCursor byViews = EventCursor.decode(EventCursor.byViews(42, 8L).encode());
+        EventCursor byId = EventCursor.decode(EventCursor.of(9L).encode());
+
+        assertThat(byDate.getEventDate()).isEqualTo(eventDate);
+        assertThat(byDate.getId()).isEqualTo(7L);
+        assertThat(byViews.getViews()).isEqualTo(42);
+        assertThat(byViews.getId()).isEqualTo(8L);
+        assertThat(byId.getId()).isEqualTo(9L);
+        assertThat(byId.getEventDate()).isNull();
+        assertThat(byId.getViews()).isNull();
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        for (String raw : new String[]{"", "|5", "|", "x1|5", "v|5", "vmany|5", "d2024-13-01T00:00|5", "v1|", "abc"}) {
+            assertThatThrownBy(() -> EventCursor.decode(encode(raw))).as(raw)
+                    .isInstanceOf(InvalidCursorException.class);
+        }
+        assertThatThrownBy(() -> EventCursor.decode("не base64"))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,126 @@
+package ru.practicum.explore_with_me.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import ru.practicum.explore_with_me.WebClientService;
+import ru.practicum.explore_with_me.dto.StatsResponseDto;
+import ru.practicum.explore_with_me.model.Event;
+import ru.practicum.explore_with_me.repository.CommentRepository;
+import ru.practicum.explore_with_me.repository.ParticipationRequestRepository;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Заполнение просмотров страницы событий по ответу сервиса статистики: прежний вложенный цикл с разбором uri
+ * на каждое сравнение против индекса по id события. Ответ сервиса статистики подменяется готовым списком,
+ * у каждого десятого события просмотров нет. Запуск описан в README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViewsEnrichmentBenchmark {
+    @Param({"1000", "10000"})
+    private int eventCount;
+
+    private List<Event> events;
+    private List<Long> eventIds;
+    private List<StatsResponseDto> stats;
+    private ViewsCache viewsCache;
+    private EventEnricher enricher;
+
+    @Setup
+    public void setUp() {
+        // без контекста Spring logback пишет в консоль отладочную строку кэша на каждую операцию
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        Random random = new Random(42);
+        events = new ArrayList<>(eventCount);
+        stats = new ArrayList<>(eventCount);
+        for (long id = 1; id <= eventCount; id++) {
+            Event event = new Event();
+            event.setId(id * 7);
+            events.add(event);
+            if (id % 10 != 0) {
+                stats.add(new StatsResponseDto("ewm-main-service", "/events/" + event.getId(), random.nextInt(1000)));
+            }
+        }
+        Collections.shuffle(stats, random);
+        eventIds = events.stream().map(Event::getId).collect(Collectors.toList());
+
+        WebClientService statsClient = mock(WebClientService.class, withSettings().stubOnly());
+        when(statsClient.getStats(any(), any(), anyList(), eq(true))).thenReturn(stats);
+        viewsCache = new ViewsCache(statsClient, new SimpleMeterRegistry(), 100_000, Duration.ofHours(1),
+                Duration.ofHours(1));
+        enricher = new EventEnricher(viewsCache, mock(ParticipationRequestRepository.class),
+                mock(CommentRepository.class), 1, 10, 10_000, 10_000, 10, 1);
+        viewsCache.refresh(eventIds);
+    }
+
+    @TearDown
+    public void tearDown() {
+        enricher.shutdown();
+        viewsCache.shutdown();
+    }
+
+    /**
+     * Прежний UtilService.fillViews: для каждого события обход всего ответа с split и parseInt.
+     */
+    @Benchmark
+    public List<Event> nestedLoop() {
+        List<Event> result = new ArrayList<>();
+        for (Event ev : events) {
+            for (StatsResponseDto statsResponseDto : stats) {
+                String[] statsFields = statsResponseDto.getUri().split("/");
+                if (Integer.parseInt(statsFields[2]) == ev.getId()) {
+                    ev.setViews(statsResponseDto.getHits());
+                    result.add(ev);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Загрузка ответа в кэш по индексу uri и заполнение событий через LongIntHashMap, как при промахе кэша.
+     */
+    @Benchmark
+    public List<Event> indexed() {
+        Map<Long, Integer> loaded = viewsCache.refresh(eventIds);
+        LongIntHashMap views = new LongIntHashMap(loaded.size());
+        loaded.forEach(views::put);
+        for (Event event : events) {
+            event.setViews(views.getOrDefault(event.getId(), 0));
+        }
+        return events;
+    }
+
+    /**
+     * Этап просмотров EventEnricher при попадании в кэш, с переходом в пул этапов.
+     */
+    @Benchmark
+    public List<Event> enricherCached() {
+        return enricher.load(eventIds, EnumSet.of(EventEnricher.Stage.VIEWS)).fill(events);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ViewsEnrichmentBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,165 @@
+package ru.practicum.explore_with_me;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import ru.practicum.explore_with_me.dto.StatsRequestDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Буфер просмотров для сервиса статистики. Запросы не ждут ответа stats-server: запись попадает
+ * в ограниченную очередь, а отправка пачками выполняется одним фоновым потоком по размеру пачки
+ * или по таймеру. При переполнении очереди запись отбрасывается и учитывается в счётчике.
+ * Пачка, не доставленная из-за недоступности сервиса (цепь разомкнута, 5xx, сетевая ошибка), возвращается
+ * в очередь в пределах свободного места и уходит со следующей отправкой; не поместившиеся записи отбрасываются.
+ * Пачка, отклонённая ответом 4xx, повторно не отправляется. После close() новые записи не принимаются
+ * и учитываются как отброшенные.
+ */
+@Slf4j
+public class HitBatchSender {
+    private final Function<List<StatsRequestDto>, Mono<Void>> sender;
+    private final BlockingQueue<StatsRequestDto> queue;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicLong sentHits = new AtomicLong();
+    private final AtomicLong droppedHits = new AtomicLong();
+    private final AtomicLong failedHits = new AtomicLong();
+    private final AtomicLong requeuedHits = new AtomicLong();
+
+    public HitBatchSender(Function<List<StatsRequestDto>, Mono<Void>> sender, int queueCapacity, int batchSize,
+                          long flushIntervalMs) {
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-hit-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean offer(StatsRequestDto hit) {
+        if (closed.get()) {
+            droppedHits.incrementAndGet();
+            return false;
+        }
+        if (!queue.offer(hit)) {
+            long dropped = droppedHits.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                log.warn("Очередь статистики переполнена, отброшено записей: {}", dropped);
+            }
+            return false;
+        }
+        if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushRequested.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // отправитель закрывается: запись уже в очереди и уйдёт с последней отправкой в close()
+                flushRequested.set(false);
+            }
+        }
+        return true;
+    }
+
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Отправка статистики остановлена: отправлено {}, отброшено {}, ошибок {}, не отправлено {}",
+                sentHits.get(), droppedHits.get(), failedHits.get(), queue.size());
+    }
+
+    public long getSentHits() {
+        return sentHits.get();
+    }
+
+    public long getDroppedHits() {
+        return droppedHits.get();
+    }
+
+    public long getFailedHits() {
+        return failedHits.get();
+    }
+
+    public long getRequeuedHits() {
+        return requeuedHits.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void flush() {
+        List<StatsRequestDto> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            if (!send(batch)) {
+                // сервис недоступен: остальное ждёт следующей отправки
+                return;
+            }
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * Отправляет пачку; false, если сервис недоступен и пачка возвращена в очередь.
+     */
+    private boolean send(List<StatsRequestDto> batch) {
+        try {
+            sender.apply(batch).block();
+            sentHits.addAndGet(batch.size());
+            return true;
+        } catch (WebClientResponseException e) {
+            if (e.getStatusCode().is4xxClientError()) {
+                failedHits.addAndGet(batch.size());
+                log.warn("Сервис статистики отклонил {} записей: {}", batch.size(), e.getMessage());
+                return true;
+            }
+            requeue(batch, e);
+            return false;
+        } catch (RuntimeException e) {
+            requeue(batch, e);
+            return false;
+        }
+    }
+
+    private void requeue(List<StatsRequestDto> batch, RuntimeException e) {
+        int requeued = 0;
+        for (StatsRequestDto hit : batch) {
+            if (!queue.offer(hit)) {
+                break;
+            }
+            requeued++;
+        }
+        requeuedHits.addAndGet(requeued);
+        droppedHits.addAndGet(batch.size() - requeued);
+        log.warn("Не удалось отправить {} записей статистики, возвращено в очередь {}: {}",
+                batch.size(), requeued, e.getMessage());
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.explore_with_me;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Размыкатель цепи для вызовов сервиса статистики. После failureThreshold ошибок подряд вызовы
+ * отклоняются сразу, не занимая соединений и потоков. Через openDurationMs пропускается один пробный вызов:
+ * успех замыкает цепь, ошибка снова размыкает её на тот же срок.
+ */
+@Slf4j
+public class StatsCircuitBreaker {
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public StatsCircuitBreaker(int failureThreshold, long openDurationMs) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDurationMs * 1_000_000;
+    }
+
+    /**
+     * Разрешение на вызов; после вызова обязательно сообщить результат через onSuccess, onFailure или onIgnored.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Сервис статистики снова отвечает, цепь замкнута");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Цепь к сервису статистики разомкнута после {} ошибок подряд", failures);
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Вызов завершился без признака сбоя сервиса (отмена, ошибка клиента): пробный вызов освобождается.
+     */
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+}
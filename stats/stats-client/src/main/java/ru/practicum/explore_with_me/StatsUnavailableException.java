@@ -0,0 +1,12 @@
+package ru.practicum.explore_with_me;
+
+import org.springframework.web.reactive.function.client.WebClientException;
+
+/**
+ * Вызов сервиса статистики отклонён без обращения к нему: цепь разомкнута или превышен лимит одновременных вызовов.
+ */
+public class StatsUnavailableException extends WebClientException {
+    public StatsUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,58 +1,263 @@
 package ru.practicum.explore_with_me;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import ru.practicum.explore_with_me.dto.StatsBinaryCodec;
 import ru.practicum.explore_with_me.dto.StatsRequestDto;
 import ru.practicum.explore_with_me.dto.StatsResponseDto;
 
+import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Клиент сервиса статистики. Соединения берутся из ограниченного пула с таймаутами подключения и чтения,
+ * число одновременных вызовов ограничено, а при серии сбоев размыкатель цепи отклоняет вызовы сразу.
+ * Поэтому медленный stats-server не занимает потоки вызывающего сервиса дольше таймаутов.
+ * Метрики публикуются с префиксом stats.client.
+ */
 @Service
 public class WebClientService {
+    private static final String STATS_PATH = "/stats";
+    private static final String BATCH_PATH = "/hit/batch";
+    private static final MediaType BINARY = MediaType.parseMediaType(StatsBinaryCodec.MEDIA_TYPE);
+    private static final int MAX_RESPONSE_BYTES = 16 * 1024 * 1024;
+
     protected final WebClient webClient;
     private final String baseUrl;
+    private final HitBatchSender hitSender;
+    private final String precision;
+    private final ConnectionProvider connectionProvider;
+    private final StatsCircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final MeterRegistry meterRegistry;
+    private final boolean binary;
     public static final String TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(TIME_PATTERN);
 
     @Autowired
-    public WebClientService(WebClient.Builder webClientBuilder, @Value("${stats-server.url}") String baseUrl) {
+    public WebClientService(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+                            @Value("${stats-server.url}") String baseUrl,
+                            @Value("${stats-server.hits.queue-capacity:10000}") int queueCapacity,
+                            @Value("${stats-server.hits.batch-size:200}") int batchSize,
+                            @Value("${stats-server.hits.flush-interval-ms:1000}") long flushIntervalMs,
+                            @Value("${stats-server.precision:exact}") String precision,
+                            @Value("${stats-server.connect-timeout-ms:1000}") int connectTimeoutMs,
+                            @Value("${stats-server.read-timeout-ms:3000}") long readTimeoutMs,
+                            @Value("${stats-server.pool.max-connections:50}") int maxConnections,
+                            @Value("${stats-server.pool.pending-acquire-timeout-ms:1000}") long pendingAcquireTimeoutMs,
+                            @Value("${stats-server.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+                            @Value("${stats-server.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                            @Value("${stats-server.circuit-breaker.open-duration-ms:10000}") long openDurationMs,
+                            @Value("${stats-server.wire-format:json}") String wireFormat) {
         this.baseUrl = baseUrl;
+        this.binary = "binary".equalsIgnoreCase(wireFormat);
+        this.precision = precision;
+        this.meterRegistry = meterRegistry;
+        this.connectionProvider = ConnectionProvider.builder("stats-client")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                .doOnConnected(connection -> connection.addHandlerLast(
+                        new ReadTimeoutHandler(readTimeoutMs, TimeUnit.MILLISECONDS)));
         webClientBuilder.baseUrl(baseUrl);
+        webClientBuilder.clientConnector(new ReactorClientHttpConnector(httpClient));
+        webClientBuilder.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_RESPONSE_BYTES));
         this.webClient = webClientBuilder.build();
+        this.circuitBreaker = new StatsCircuitBreaker(failureThreshold, openDurationMs);
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.hitSender = new HitBatchSender(this::saveBatch, queueCapacity, batchSize, flushIntervalMs);
+        registerMetrics(maxConcurrentCalls);
     }
 
+    /**
+     * Запись хита ставится в очередь и отправляется пачкой в фоне, вызывающий поток не ждёт stats-server.
+     */
     public void save(String app, String uri, String ip, LocalDateTime timestamp) {
-        StatsRequestDto statsDtoForSave = new StatsRequestDto(null, app, uri, ip, timestamp);
+        hitSender.offer(new StatsRequestDto(null, app, uri, ip, timestamp));
+    }
 
-        webClient.post()
-                .uri("/hit")
-                .body(Mono.just(statsDtoForSave), StatsRequestDto.class)
+    public Mono<Void> saveBatch(List<StatsRequestDto> hits) {
+        WebClient.RequestHeadersSpec<?> request = binary
+                ? webClient.post().uri(BATCH_PATH).contentType(BINARY).bodyValue(StatsBinaryCodec.encodeHits(hits))
+                : webClient.post().uri(BATCH_PATH).bodyValue(hits);
+        return guarded("save", request
                 .retrieve()
-                .bodyToMono(StatsRequestDto.class)
-                .block();
+                .toBodilessEntity()
+                .then());
+    }
+
+    public CompletableFuture<Void> saveBatchAsync(List<StatsRequestDto> hits) {
+        return saveBatch(hits).toFuture();
     }
 
     public List<StatsResponseDto> getStats(LocalDateTime start,
                                            LocalDateTime end,
                                            List<String> uris,
                                            boolean unique) {
+        return getStatsMono(start, end, uris, unique).block();
+    }
+
+    public Mono<List<StatsResponseDto>> getStatsMono(LocalDateTime start,
+                                                     LocalDateTime end,
+                                                     List<String> uris,
+                                                     boolean unique) {
+        WebClient.RequestHeadersSpec<?> request = statsRequest(start, end, uris, unique);
+        if (binary) {
+            // JSON оставлен в Accept для ответов с ошибкой
+            return guarded("getStats", request.accept(BINARY, MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(byte[].class)
+                    .map(StatsBinaryCodec::decodeStats)
+                    .defaultIfEmpty(List.of()));
+        }
+        return guarded("getStats", request
+                .retrieve()
+                .bodyToFlux(StatsResponseDto.class)
+                .collectList());
+    }
+
+    public CompletableFuture<List<StatsResponseDto>> getStatsAsync(LocalDateTime start,
+                                                                   LocalDateTime end,
+                                                                   List<String> uris,
+                                                                   boolean unique) {
+        return getStatsMono(start, end, uris, unique).toFuture();
+    }
+
+    /**
+     * Статистика потоком NDJSON: записи приходят по мере чтения на сервере и не собираются в список.
+     */
+    public Flux<StatsResponseDto> streamStats(LocalDateTime start,
+                                              LocalDateTime end,
+                                              List<String> uris,
+                                              boolean unique) {
+        return guarded("streamStats", statsRequest(start, end, uris, unique)
+                .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToFlux(StatsResponseDto.class));
+    }
+
+    public HitBatchSender getHitSender() {
+        return hitSender;
+    }
+
+    public StatsCircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hitSender.close();
+        connectionProvider.dispose();
+    }
 
+    private WebClient.RequestHeadersSpec<?> statsRequest(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                         boolean unique) {
         return webClient.get()
                 .uri(uriBuilder -> uriBuilder
-                        .path("/stats")
+                        .path(STATS_PATH)
                         .queryParam("start", start.format(formatter))
                         .queryParam("end", end.format(formatter))
                         .queryParam("unique", String.valueOf(unique))
                         .queryParam("uris", uris)
-                        .build())
-                .retrieve()
-                .bodyToFlux(StatsResponseDto.class)
-                .collectList()
-                .block();
+                        .queryParam("precision", precision)
+                        .build());
+    }
+
+    /**
+     * Вызов через ограничитель одновременных вызовов и размыкатель цепи. Отклонённый вызов завершается
+     * StatsUnavailableException без обращения к stats-server; ошибки 4xx не считаются сбоем сервиса.
+     */
+    private <T> Mono<T> guarded(String operation, Mono<T> call) {
+        return guarded(operation, call.flux()).singleOrEmpty();
+    }
+
+    private <T> Flux<T> guarded(String operation, Flux<T> call) {
+        return Flux.defer(() -> {
+            if (!bulkhead.tryAcquire()) {
+                record(operation, "rejected", 0);
+                return Flux.error(new StatsUnavailableException(
+                        "Превышен лимит одновременных вызовов сервиса статистики"));
+            }
+            if (!circuitBreaker.tryAcquire()) {
+                bulkhead.release();
+                record(operation, "rejected", 0);
+                return Flux.error(new StatsUnavailableException("Цепь к сервису статистики разомкнута"));
+            }
+            long start = System.nanoTime();
+            return call
+                    .doOnComplete(() -> {
+                        circuitBreaker.onSuccess();
+                        record(operation, "success", System.nanoTime() - start);
+                    })
+                    .doOnError(e -> {
+                        if (e instanceof WebClientResponseException
+                                && ((WebClientResponseException) e).getStatusCode().is4xxClientError()) {
+                            circuitBreaker.onIgnored();
+                        } else {
+                            circuitBreaker.onFailure();
+                        }
+                        record(operation, "error", System.nanoTime() - start);
+                    })
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            circuitBreaker.onIgnored();
+                        }
+                        bulkhead.release();
+                    });
+        });
+    }
+
+    private void record(String operation, String outcome, long nanos) {
+        Timer.builder("stats.client.requests")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void registerMetrics(int maxConcurrentCalls) {
+        Gauge.builder("stats.client.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("0 - замкнута, 1 - разомкнута, 2 - пробный вызов")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.bulkhead.in-flight", bulkhead,
+                        semaphore -> maxConcurrentCalls - semaphore.availablePermits())
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits.sent", hitSender, HitBatchSender::getSentHits)
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits.dropped", hitSender, HitBatchSender::getDroppedHits)
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits.failed", hitSender, HitBatchSender::getFailedHits)
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits.requeued", hitSender, HitBatchSender::getRequeuedHits)
+                .register(meterRegistry);
+        Gauge.builder("stats.client.hits.queue", hitSender, HitBatchSender::getQueueSize)
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,226 @@
+package ru.practicum.explore_with_me.dto;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактный двоичный формат обмена между stats-client и stats-service, альтернатива JSON.
+ * Сообщение: версия, тип, словарь строк и записи. Повторяющиеся app, uri и ip передаются один раз в словаре,
+ * а записи ссылаются на них номерами; числа пишутся как varint, время — как epoch millis в UTC.
+ * Время хита, как и в JSON, передаётся с точностью до секунды: доли секунды отбрасываются при записи и при чтении,
+ * иначе хит с долями секунды после end попал бы в диапазон [start, end + 1 c) запроса статистики.
+ * Номер 0 в ссылке означает null, время null кодируется Long.MIN_VALUE.
+ * При чтении сообщение целиком загружается в память, но не больше MAX_MESSAGE_SIZE байт, а каждый размер
+ * сверяется с оставшимися байтами до выделения памяти под него.
+ */
+public final class StatsBinaryCodec {
+    public static final String MEDIA_TYPE = "application/x-ewm-stats";
+
+    private static final int VERSION = 1;
+    private static final int HITS = 'H';
+    private static final int STATS = 'S';
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    private static final int MAX_MESSAGE_SIZE = 16 << 20;
+    private static final int MIN_HIT_SIZE = 3 + Long.BYTES;
+    private static final int MIN_STAT_SIZE = 3;
+
+    private StatsBinaryCodec() {
+    }
+
+    public static void encodeHits(List<StatsRequestDto> hits, OutputStream out) throws IOException {
+        Dictionary dictionary = new Dictionary();
+        int[] refs = new int[hits.size() * 3];
+        for (int i = 0; i < hits.size(); i++) {
+            StatsRequestDto hit = hits.get(i);
+            refs[i * 3] = dictionary.ref(hit.getApp());
+            refs[i * 3 + 1] = dictionary.ref(hit.getUri());
+            refs[i * 3 + 2] = dictionary.ref(hit.getIp());
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        writeHeader(data, HITS, dictionary);
+        writeVarInt(data, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            writeVarInt(data, refs[i * 3]);
+            writeVarInt(data, refs[i * 3 + 1]);
+            writeVarInt(data, refs[i * 3 + 2]);
+            LocalDateTime timestamp = hits.get(i).getTimestamp();
+            data.writeLong(timestamp == null
+                    ? NULL_TIME : timestamp.truncatedTo(ChronoUnit.SECONDS).toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+        data.flush();
+    }
+
+    public static List<StatsRequestDto> decodeHits(InputStream in) throws IOException {
+        DataInputStream data = readMessage(in);
+        String[] dictionary = readHeader(data, HITS);
+        int count = readSize(data, MIN_HIT_SIZE);
+        List<StatsRequestDto> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String app = lookup(dictionary, readVarInt(data));
+            String uri = lookup(dictionary, readVarInt(data));
+            String ip = lookup(dictionary, readVarInt(data));
+            long millis = data.readLong();
+            LocalDateTime timestamp = millis == NULL_TIME ? null
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC)
+                    .truncatedTo(ChronoUnit.SECONDS);
+            hits.add(new StatsRequestDto(null, app, uri, ip, timestamp));
+        }
+        return hits;
+    }
+
+    public static void encodeStats(List<StatsResponseDto> stats, OutputStream out) throws IOException {
+        Dictionary dictionary = new Dictionary();
+        int[] refs = new int[stats.size() * 2];
+        for (int i = 0; i < stats.size(); i++) {
+            refs[i * 2] = dictionary.ref(stats.get(i).getApp());
+            refs[i * 2 + 1] = dictionary.ref(stats.get(i).getUri());
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        writeHeader(data, STATS, dictionary);
+        writeVarInt(data, stats.size());
+        for (int i = 0; i < stats.size(); i++) {
+            writeVarInt(data, refs[i * 2]);
+            writeVarInt(data, refs[i * 2 + 1]);
+            Integer hits = stats.get(i).getHits();
+            writeVarInt(data, hits == null ? 0 : hits);
+        }
+        data.flush();
+    }
+
+    public static List<StatsResponseDto> decodeStats(InputStream in) throws IOException {
+        DataInputStream data = readMessage(in);
+        String[] dictionary = readHeader(data, STATS);
+        int count = readSize(data, MIN_STAT_SIZE);
+        List<StatsResponseDto> stats = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String app = lookup(dictionary, readVarInt(data));
+            String uri = lookup(dictionary, readVarInt(data));
+            stats.add(new StatsResponseDto(app, uri, readVarInt(data)));
+        }
+        return stats;
+    }
+
+    public static byte[] encodeHits(List<StatsRequestDto> hits) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + hits.size() * 12);
+        try {
+            encodeHits(hits, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static List<StatsResponseDto> decodeStats(byte[] bytes) {
+        try {
+            return decodeStats(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream data, int type, Dictionary dictionary) throws IOException {
+        data.writeByte(VERSION);
+        data.writeByte(type);
+        writeVarInt(data, dictionary.values.size());
+        for (String value : dictionary.values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(data, bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static String[] readHeader(DataInputStream data, int type) throws IOException {
+        int version = data.readUnsignedByte();
+        int actualType = data.readUnsignedByte();
+        if (version != VERSION || actualType != type) {
+            throw new IOException(String.format("Неподдерживаемое сообщение статистики: версия %d, тип %c",
+                    version, (char) actualType));
+        }
+        int size = readSize(data, 1);
+        String[] dictionary = new String[size];
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = new byte[readSize(data, 1)];
+            data.readFully(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return dictionary;
+    }
+
+    private static DataInputStream readMessage(InputStream in) throws IOException {
+        byte[] message = in.readNBytes(MAX_MESSAGE_SIZE + 1);
+        if (message.length > MAX_MESSAGE_SIZE) {
+            throw new IOException(String.format("Сообщение статистики больше %d байт", MAX_MESSAGE_SIZE));
+        }
+        // available() потока над массивом равно точному числу оставшихся байт
+        return new DataInputStream(new ByteArrayInputStream(message));
+    }
+
+    /**
+     * Число элементов, каждый из которых занимает не меньше minSize байт: больше, чем помещается в остаток
+     * сообщения, быть не может.
+     */
+    private static int readSize(DataInputStream data, int minSize) throws IOException {
+        int size = readVarInt(data);
+        if ((long) size * minSize > data.available()) {
+            throw new IOException(String.format("Размер %d больше остатка сообщения из %d байт", size,
+                    data.available()));
+        }
+        return size;
+    }
+
+    private static String lookup(String[] dictionary, int ref) throws IOException {
+        if (ref == 0) {
+            return null;
+        }
+        if (ref > dictionary.length) {
+            throw new IOException(String.format("Ссылка %d за пределами словаря из %d строк", ref, dictionary.length));
+        }
+        return dictionary[ref - 1];
+    }
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Отрицательное значение varint");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Слишком длинное значение varint");
+    }
+
+    private static class Dictionary {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int ref(String value) {
+            if (value == null) {
+                return 0;
+            }
+            return refs.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size();
+            });
+        }
+    }
+}
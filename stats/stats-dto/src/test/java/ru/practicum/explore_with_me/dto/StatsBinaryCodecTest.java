@@ -0,0 +1,70 @@
+package ru.practicum.explore_with_me.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsBinaryCodecTest {
+
+    @Test
+    void hitsRoundTrip() throws IOException {
+        List<StatsRequestDto> hits = List.of(
+                new StatsRequestDto(null, "ewm-main-service", "/events/1", "10.0.0.1",
+                        LocalDateTime.of(2026, 10, 18, 12, 0, 5)),
+                new StatsRequestDto(null, "ewm-main-service", "/events/1", "10.0.0.2", null),
+                new StatsRequestDto(null, "ewm-main-service", null, "10.0.0.1",
+                        LocalDateTime.of(1969, 12, 31, 23, 59, 59)));
+
+        List<StatsRequestDto> decoded = decodeHits(StatsBinaryCodec.encodeHits(hits));
+
+        assertThat(decoded).usingRecursiveFieldByFieldElementComparator().isEqualTo(hits);
+    }
+
+    @Test
+    void hitTimeIsTruncatedToSecondsLikeJson() throws IOException {
+        LocalDateTime time = LocalDateTime.of(2026, 10, 18, 12, 0, 5, 500_000_000);
+        List<StatsRequestDto> hits = List.of(new StatsRequestDto(null, "app", "/events/1", "10.0.0.1", time));
+
+        List<StatsRequestDto> decoded = decodeHits(StatsBinaryCodec.encodeHits(hits));
+
+        assertThat(decoded.get(0).getTimestamp()).isEqualTo(LocalDateTime.of(2026, 10, 18, 12, 0, 5));
+    }
+
+    @Test
+    void statsRoundTrip() throws IOException {
+        List<StatsResponseDto> stats = List.of(
+                new StatsResponseDto("ewm-main-service", "/events/1", 300),
+                new StatsResponseDto("ewm-main-service", "/events/2", 0));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsBinaryCodec.encodeStats(stats, out);
+
+        assertThat(StatsBinaryCodec.decodeStats(out.toByteArray()))
+                .usingRecursiveFieldByFieldElementComparator().isEqualTo(stats);
+    }
+
+    @Test
+    void sizeLargerThanMessageIsRejectedBeforeAllocation() {
+        byte[] message = StatsBinaryCodec.encodeHits(List.of(
+                new StatsRequestDto(null, "app", "/events/1", "10.0.0.1", LocalDateTime.now())));
+        // словарь из трёх строк: заменяем число записей на varint 2^28
+        byte[] forged = Arrays.copyOf(message, message.length + 3);
+        int countOffset = message.length - (3 + Long.BYTES) - 1;
+        System.arraycopy(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01}, 0, forged, countOffset, 4);
+        System.arraycopy(message, countOffset + 1, forged, countOffset + 4, message.length - countOffset - 1);
+
+        assertThatThrownBy(() -> decodeHits(forged)).isInstanceOf(IOException.class);
+    }
+
+    private static List<StatsRequestDto> decodeHits(byte[] bytes) throws IOException {
+        return StatsBinaryCodec.decodeHits(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.explore_with_me.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость кодирования и разбора пачки хитов в JSON и в двоичном формате StatsBinaryCodec.
+ * Размеры сообщений печатаются при подготовке данных. Запуск описан в README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsCodecBenchmark {
+    private static final TypeReference<List<StatsRequestDto>> HITS = new TypeReference<>() {
+    };
+
+    @Param({"200", "10000"})
+    private int batchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private List<StatsRequestDto> hits;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 0, 0);
+        hits = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            hits.add(new StatsRequestDto(null, "ewm-main-service", "/events/" + random.nextInt(500),
+                    "192.168." + random.nextInt(256) + "." + random.nextInt(256),
+                    start.plusSeconds(random.nextInt(86_400))));
+        }
+        json = objectMapper.writeValueAsBytes(hits);
+        binary = StatsBinaryCodec.encodeHits(hits);
+        System.out.printf("%nХитов %d: JSON %d байт, двоичный формат %d байт%n", batchSize, json.length,
+                binary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return StatsBinaryCodec.encodeHits(hits);
+    }
+
+    @Benchmark
+    public List<StatsRequestDto> decodeJson() throws IOException {
+        return objectMapper.readValue(json, HITS);
+    }
+
+    @Benchmark
+    public List<StatsRequestDto> decodeBinary() throws IOException {
+        return StatsBinaryCodec.decodeHits(new ByteArrayInputStream(binary));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StatsCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -2,8 +2,10 @@ package ru.practicum.explore_with_me;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MainStatsService {
 
     public static void main(String[] args) {
@@ -0,0 +1,87 @@
+package ru.practicum.explore_with_me.config;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import ru.practicum.explore_with_me.dto.StatsBinaryCodec;
+import ru.practicum.explore_with_me.dto.StatsRequestDto;
+import ru.practicum.explore_with_me.dto.StatsResponseDto;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Чтение хитов и запись статистики в формате StatsBinaryCodec. Одиночный хит передаётся как пачка из одной записи.
+ */
+public class StatsBinaryMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public StatsBinaryMessageConverter() {
+        super(MediaType.parseMediaType(StatsBinaryCodec.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return StatsRequestDto.class == clazz;
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        // по классу ответа элементы списка не видны, точная проверка типа выполняется в canWrite
+        return supports(clazz) || List.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (type == StatsRequestDto.class || isListOf(type, StatsRequestDto.class)) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return isListOf(type, StatsResponseDto.class) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        List<StatsRequestDto> hits = readHits(inputMessage);
+        if (type != StatsRequestDto.class) {
+            return hits;
+        }
+        if (hits.size() != 1) {
+            throw new HttpMessageNotReadableException(
+                    String.format("Ожидалась одна запись статистики, получено %d", hits.size()), inputMessage);
+        }
+        return hits.get(0);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object stats, Type type, HttpOutputMessage outputMessage) throws IOException {
+        StatsBinaryCodec.encodeStats((List<StatsResponseDto>) stats, outputMessage.getBody());
+    }
+
+    private List<StatsRequestDto> readHits(HttpInputMessage inputMessage) {
+        try {
+            return StatsBinaryCodec.decodeHits(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Некорректное двоичное сообщение статистики: " + e.getMessage(),
+                    e, inputMessage);
+        }
+    }
+
+    private static boolean isListOf(Type type, Class<?> elementClass) {
+        if (!(type instanceof ParameterizedType)) {
+            return false;
+        }
+        ParameterizedType parameterized = (ParameterizedType) type;
+        return parameterized.getRawType() == List.class && parameterized.getActualTypeArguments()[0] == elementClass;
+    }
+}
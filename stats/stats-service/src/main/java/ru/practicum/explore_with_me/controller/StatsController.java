@@ -1,32 +1,83 @@
 package ru.practicum.explore_with_me.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.explore_with_me.dto.StatsPage;
 import ru.practicum.explore_with_me.dto.StatsRequestDto;
 import ru.practicum.explore_with_me.dto.StatsResponseDto;
+import ru.practicum.explore_with_me.model.StatsPrecision;
 import ru.practicum.explore_with_me.service.StatsService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
+@Validated
 @Slf4j
 @RequiredArgsConstructor
 public class StatsController {
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/stats")
     public List<StatsResponseDto> getStats(@RequestParam("start") LocalDateTime start,
                                            @RequestParam("end") LocalDateTime end,
                                            @RequestParam(value = "uris", required = false) List<String> uris,
-                                           @RequestParam(value = "unique", defaultValue = "false") boolean unique) {
-        log.info("Получение статистики с {} по {} по эндпоинтам ({}). unique = {}.", start, end,
-                uris, unique);
-        return statsService.getStats(start, end, uris, unique);
+                                           @RequestParam(value = "unique", defaultValue = "false") boolean unique,
+                                           @RequestParam(value = "precision", defaultValue = "exact")
+                                           String precision,
+                                           @RequestParam(value = "limit", required = false) @Positive Integer limit,
+                                           @RequestParam(value = "offset", defaultValue = "0") @PositiveOrZero
+                                           int offset) {
+        log.info("Получение статистики с {} по {} по эндпоинтам ({}). unique = {}, precision = {}, limit = {}, "
+                + "offset = {}.", start, end, uris, unique, precision, limit, offset);
+        return statsService.getStats(start, end, uris, unique, StatsPrecision.from(precision),
+                new StatsPage(limit, offset));
+    }
+
+    /**
+     * Та же статистика в формате NDJSON: строки пишутся в ответ по мере чтения из базы,
+     * поэтому память не зависит от числа эндпоинтов.
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamStats(@RequestParam("start") LocalDateTime start,
+                            @RequestParam("end") LocalDateTime end,
+                            @RequestParam(value = "uris", required = false) List<String> uris,
+                            @RequestParam(value = "unique", defaultValue = "false") boolean unique,
+                            @RequestParam(value = "precision", defaultValue = "exact") String precision,
+                            @RequestParam(value = "limit", required = false) @Positive Integer limit,
+                            @RequestParam(value = "offset", defaultValue = "0") @PositiveOrZero int offset,
+                            HttpServletResponse response) throws IOException {
+        log.info("Потоковое получение статистики с {} по {} по эндпоинтам ({}). unique = {}, precision = {}, "
+                + "limit = {}, offset = {}.", start, end, uris, unique, precision, limit, offset);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (SequenceWriter writer = objectMapper.writerFor(StatsResponseDto.class)
+                .withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            statsService.streamStats(start, end, uris, unique, StatsPrecision.from(precision),
+                    new StatsPage(limit, offset), stat -> {
+                try {
+                    writer.write(stat);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
     }
 
     @PostMapping("/hit")
@@ -36,4 +87,12 @@ public class StatsController {
         log.info("Сохранение статистики {}.", statsRequestDto);
         statsService.save(statsRequestDto);
     }
+
+    @PostMapping("/hit/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    @Transactional
+    public void addAll(@RequestBody List<@Valid StatsRequestDto> statsRequestDtos) {
+        log.info("Сохранение пачки статистики из {} записей.", statsRequestDtos.size());
+        statsService.saveAll(statsRequestDtos);
+    }
 }
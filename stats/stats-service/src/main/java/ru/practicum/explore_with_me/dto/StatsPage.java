@@ -0,0 +1,20 @@
+package ru.practicum.explore_with_me.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Окно результата статистики после сортировки по убыванию хитов; limit null — без ограничения.
+ */
+@Getter
+@AllArgsConstructor
+public class StatsPage {
+    public static final StatsPage ALL = new StatsPage(null, 0);
+
+    private Integer limit;
+    private int offset;
+
+    public boolean isLimited() {
+        return limit != null;
+    }
+}
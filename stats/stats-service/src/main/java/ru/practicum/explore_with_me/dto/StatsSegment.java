@@ -0,0 +1,19 @@
+package ru.practicum.explore_with_me.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.explore_with_me.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+public class StatsSegment {
+    private RollupGranularity granularity;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
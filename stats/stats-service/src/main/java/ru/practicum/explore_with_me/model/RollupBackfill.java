@@ -0,0 +1,13 @@
+package ru.practicum.explore_with_me.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupBackfill {
+    HITS(1),
+    SKETCHES(2);
+
+    private final int id;
+}
@@ -0,0 +1,27 @@
+package ru.practicum.explore_with_me.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupGranularity {
+    DAY(ChronoUnit.DAYS, "day"),
+    HOUR(ChronoUnit.HOURS, "hour"),
+    MINUTE(ChronoUnit.MINUTES, "minute");
+
+    private final ChronoUnit unit;
+    private final String sqlUnit;
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+}
@@ -1,27 +0,0 @@
-package ru.practicum.explore_with_me.model;
-
-import lombok.*;
-
-import javax.persistence.*;
-import java.time.LocalDateTime;
-
-@Getter
-@Setter
-@RequiredArgsConstructor
-@Entity
-@Table(name = "stats")
-public class Stat {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Column(name = "id_stats", nullable = false)
-    private Long id;
-    @ManyToOne(fetch = FetchType.EAGER)
-    @JoinColumn(name = "app_id")
-    private Application app;
-    @Column(name = "uri", nullable = false)
-    private String uri;
-    @Column(name = "ip", nullable = false)
-    private String ip;
-    @Column(name = "timestamp", nullable = false)
-    private LocalDateTime timestamp;
-}
\ No newline at end of file
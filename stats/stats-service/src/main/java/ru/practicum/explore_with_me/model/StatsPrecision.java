@@ -0,0 +1,15 @@
+package ru.practicum.explore_with_me.model;
+
+public enum StatsPrecision {
+    EXACT,
+    APPROX;
+
+    public static StatsPrecision from(String precision) {
+        for (StatsPrecision value : values()) {
+            if (value.name().equalsIgnoreCase(precision)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Некорректный параметр точности = %s", precision));
+    }
+}
@@ -1,5 +1,7 @@
 package ru.practicum.explore_with_me.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.explore_with_me.model.Application;
 import org.springframework.data.jpa.repository.JpaRepository;
 
@@ -7,4 +9,8 @@ import java.util.Optional;
 
 public interface ApplicationRepository extends JpaRepository<Application, Long> {
     Optional<Application> findByApp(String appName);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query(value = "insert into applications (app) values (?1) on conflict (app) do nothing", nativeQuery = true)
+    int insertIfAbsent(String appName);
+}
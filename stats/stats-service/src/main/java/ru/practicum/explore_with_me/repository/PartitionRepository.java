@@ -0,0 +1,96 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.explore_with_me.model.RollupGranularity;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    private static final String SELECT_PARTITIONS =
+            "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+                    + "where i.inhparent = to_regclass('stats')";
+    private static final String DELETE_OLD_HITS =
+            "delete from %s where ctid = any (array(select ctid from %s where hit_time < ? limit ?))";
+    private static final String DELETE_OLD_ROLLUPS =
+            "delete from stats_rollup where ctid = any (array("
+                    + "select ctid from stats_rollup where granularity = ? and bucket_start < ? limit ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class);
+    }
+
+    public void createDefaultPartition() {
+        jdbcTemplate.execute("create table if not exists stats_default partition of stats default");
+    }
+
+    public void createPartition(String name, LocalDate from, LocalDate to) {
+        jdbcTemplate.execute(String.format("create table if not exists %s partition of stats "
+                + "for values from ('%s') to ('%s')", name, from, to));
+    }
+
+    public boolean hasDefaultHits(LocalDate from, LocalDate to) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from stats_default where hit_time >= ? and hit_time < ?)", Boolean.class,
+                Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay())));
+    }
+
+    /**
+     * Создаёт секцию за период, хиты которого уже попали в секцию по умолчанию: хиты переносятся в новую
+     * таблицу, и она присоединяется к stats. Всё выполняется в одной транзакции, на время переноса
+     * секция по умолчанию заблокирована.
+     *
+     * @return число перенесённых хитов
+     */
+    @Transactional
+    public int createPartitionFromDefault(String name, LocalDate from, LocalDate to) {
+        Timestamp fromTime = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp toTime = Timestamp.valueOf(to.atStartOfDay());
+        jdbcTemplate.execute("lock table stats_default in access exclusive mode");
+        jdbcTemplate.execute(String.format("create table %s (like stats including defaults including constraints)",
+                name));
+        int moved = jdbcTemplate.update(String.format("with moved as (delete from stats_default "
+                + "where hit_time >= ? and hit_time < ? returning *) insert into %s select * from moved", name),
+                fromTime, toTime);
+        // ограничение совпадает с границами секции, поэтому присоединение не перепроверяет строки
+        jdbcTemplate.execute(String.format("alter table %s add constraint %s_range "
+                + "check (hit_time >= '%s' and hit_time < '%s')", name, name, from, to));
+        jdbcTemplate.execute(String.format("alter table stats attach partition %s "
+                + "for values from ('%s') to ('%s')", name, from, to));
+        jdbcTemplate.execute(String.format("alter table %s drop constraint %s_range", name, name));
+        return moved;
+    }
+
+    public void dropPartition(String name) {
+        jdbcTemplate.execute(String.format("drop table if exists %s", name));
+    }
+
+    /**
+     * Удаляет порцию хитов старше границы из таблицы без секций по времени.
+     *
+     * @return число удалённых строк
+     */
+    public int deleteHitsBefore(String table, LocalDate before, int limit) {
+        return jdbcTemplate.update(String.format(DELETE_OLD_HITS, table, table),
+                Timestamp.valueOf(before.atStartOfDay()), limit);
+    }
+
+    /**
+     * Удаляет порцию корзин одной гранулярности старше границы. Условие по гранулярности нужно, чтобы выборка
+     * шла по префиксу (granularity, bucket_start) первичного ключа, а не полным просмотром таблицы.
+     *
+     * @return число удалённых строк
+     */
+    public int deleteRollupsBefore(RollupGranularity granularity, LocalDate before, int limit) {
+        return jdbcTemplate.update(DELETE_OLD_ROLLUPS, granularity.name(), Timestamp.valueOf(before.atStartOfDay()),
+                limit);
+    }
+}
@@ -0,0 +1,437 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.explore_with_me.dto.StatWithHits;
+import ru.practicum.explore_with_me.dto.StatsPage;
+import ru.practicum.explore_with_me.dto.StatsSegment;
+import ru.practicum.explore_with_me.model.RollupBackfill;
+import ru.practicum.explore_with_me.model.RollupGranularity;
+import ru.practicum.explore_with_me.util.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+    private static final String UPSERT_SKETCH =
+            "insert into stats_rollup (granularity, bucket_start, app_id, uri_id, hits, ips) "
+                    + "values (:granularity, :bucketStart, :appId, :uriId, 0, :ips) "
+                    + "on conflict (granularity, bucket_start, app_id, uri_id) "
+                    + "do update set ips = excluded.ips";
+    private static final String SELECT_SKETCHES =
+            "select r.uri_id, r.ips from stats_rollup r "
+                    + "where r.granularity = :granularity and r.bucket_start = :bucketStart "
+                    + "and r.app_id = :appId and r.uri_id in (:uriIds)";
+
+    private static final String SELECT_BACKFILL_FOR_UPDATE =
+            "select last_id, to_id, next_id, next_xmax, txid_snapshot_xmin(txid_current_snapshot()) as xmin "
+                    + "from stats_rollup_backfill where id = :id for update";
+    private static final String SELECT_LAST_STAT_ID =
+            "select coalesce(pg_sequence_last_value(pg_get_serial_sequence('stats', 'id_stats')), 0)";
+    private static final String SELECT_XMAX = "select txid_snapshot_xmax(txid_current_snapshot())";
+    private static final String UPDATE_BOUNDARY =
+            "update stats_rollup_backfill set to_id = :toId, next_id = :nextId, next_xmax = :nextXmax "
+                    + "where id = :id";
+    private static final String ROLLED_UP_ID = "(select last_id from stats_rollup_backfill where id = %d)";
+    private static final String SELECT_ROLLED_UP_ID = "select last_id from stats_rollup_backfill where id = :id";
+    private static final String UPDATE_BACKFILL =
+            "update stats_rollup_backfill set last_id = :lastId where id = :id";
+    private static final String ROLL_UP_RANGE =
+            "insert into stats_rollup (granularity, bucket_start, app_id, uri_id, hits) "
+                    + "select '%s', date_trunc('%s', %s), s.app_id, %s, count(*) "
+                    + "from stats s %s "
+                    + "where s.id_stats > :fromId and s.id_stats <= :toId and s.app_id is not null "
+                    + "group by 2, 3, 4 "
+                    + "order by 2, 3, 4 "
+                    + "on conflict (granularity, bucket_start, app_id, uri_id) "
+                    + "do update set hits = stats_rollup.hits + excluded.hits";
+    private static final String SELECT_RANGE_IPS =
+            "select s.app_id, %s as uri_id, s.ip, %s as hit_time "
+                    + "from stats s %s "
+                    + "where s.id_stats > :fromId and s.id_stats <= :toId and s.app_id is not null";
+
+    private static final List<RollupGranularity> SKETCH_GRANULARITIES =
+            List.of(RollupGranularity.DAY, RollupGranularity.HOUR);
+
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator
+            .comparing(RollupKey::getGranularity)
+            .thenComparing(RollupKey::getBucketStart)
+            .thenComparing(RollupKey::getAppId)
+            .thenComparing(RollupKey::getUriId);
+
+    private static final Comparator<StatWithHits> HITS_ORDER = Comparator
+            .comparing(StatWithHits::getHits, Comparator.reverseOrder())
+            .thenComparing(StatWithHits::getApp)
+            .thenComparing(StatWithHits::getUri);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final StatsSchemaMigration schemaMigration;
+
+    /**
+     * Сворачивает очередную порцию хитов с id из (last_id, to_id]. Строка состояния блокируется на время
+     * транзакции, поэтому несколько экземпляров сервиса не посчитают одну порцию дважды.
+     * Когда порции до to_id свёрнуты, граница хитов сдвигается вперёд, и новые хиты сворачиваются
+     * при следующем запуске.
+     *
+     * @return true, если остались несвёрнутые хиты
+     */
+    @Transactional
+    public boolean backfillNextChunk(RollupBackfill backfill, long chunkSize) {
+        MapSqlParameterSource state = new MapSqlParameterSource("id", backfill.getId());
+        Map<String, Object> progress = jdbcTemplate.queryForMap(SELECT_BACKFILL_FOR_UPDATE, state);
+        long lastId = ((Number) progress.get("last_id")).longValue();
+        long toId = ((Number) progress.get("to_id")).longValue();
+        if (lastId >= toId) {
+            advanceBoundary(state, progress);
+            return false;
+        }
+        long chunkEnd = Math.min(lastId + chunkSize, toId);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fromId", lastId)
+                .addValue("toId", chunkEnd);
+        // корзины ссылаются на словарь, поэтому эндпоинты хитов, ещё не перенесённых в словарь, добавляются в него
+        schemaMigration.internUris(lastId, chunkEnd);
+        if (backfill == RollupBackfill.HITS) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                jdbcTemplate.update(String.format(ROLL_UP_RANGE, granularity.name(), granularity.getSqlUnit(),
+                        schemaMigration.hitTime("s"), schemaMigration.uriId("s", "d"),
+                        schemaMigration.uriIdJoin("s", "d")), params);
+            }
+        } else {
+            Map<RollupKey, HyperLogLog> sketches = new TreeMap<>(KEY_ORDER);
+            String sql = String.format(SELECT_RANGE_IPS, schemaMigration.uriId("s", "d"),
+                    schemaMigration.hitTime("s"), schemaMigration.uriIdJoin("s", "d"));
+            jdbcTemplate.query(sql, params, rs -> {
+                addToSketches(sketches, rs.getLong("app_id"), rs.getLong("uri_id"), rs.getString("ip"),
+                        rs.getTimestamp("hit_time").toLocalDateTime());
+            });
+            mergeSketches(sketches);
+        }
+        jdbcTemplate.update(UPDATE_BACKFILL, state.addValue("lastId", chunkEnd));
+        return chunkEnd < toId;
+    }
+
+    /**
+     * Граница to_id сдвигается в два шага. Сначала запоминается последний выданный id хита и xmax снимка:
+     * все транзакции, которые могли получить id не больше него, уже имеют номер меньше xmax.
+     * Когда самая старая из активных транзакций новее xmax, хиты до запомненного id записаны или отменены,
+     * и граница сдвигается: хит с меньшим id не появится после того, как его порция свёрнута.
+     */
+    private void advanceBoundary(MapSqlParameterSource state, Map<String, Object> progress) {
+        long toId = ((Number) progress.get("to_id")).longValue();
+        Number nextId = (Number) progress.get("next_id");
+        Number nextXmax = (Number) progress.get("next_xmax");
+        if (nextXmax != null && ((Number) progress.get("xmin")).longValue() >= nextXmax.longValue()) {
+            toId = Math.max(toId, nextId.longValue());
+            nextXmax = null;
+        }
+        if (nextXmax == null) {
+            // id читается до снимка: транзакция, получившая id раньше, попадёт в снимок как активная
+            nextId = jdbcTemplate.getJdbcTemplate().queryForObject(SELECT_LAST_STAT_ID, Long.class);
+            nextXmax = jdbcTemplate.getJdbcTemplate().queryForObject(SELECT_XMAX, Long.class);
+        }
+        jdbcTemplate.update(UPDATE_BOUNDARY, state
+                .addValue("toId", toId)
+                .addValue("nextId", nextId)
+                .addValue("nextXmax", nextXmax));
+    }
+
+    /**
+     * Хиты по сегментам построчно: в транзакции строки читаются курсором порциями по fetch size.
+     * С limit база оставляет только верхние группы и не сортирует весь набор.
+     * Хиты, ещё не свёрнутые фоновой задачей, досчитываются из сырых хитов с id больше last_id:
+     * граница читается в том же запросе, что и корзины, поэтому хит не учитывается дважды.
+     */
+    @Transactional(readOnly = true)
+    public void streamHits(List<StatsSegment> segments, List<String> uris, StatsPage page,
+                           Consumer<StatWithHits> consumer) {
+        UriFilter filter = UriFilter.of(uris);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String hitTime = schemaMigration.hitTime("s");
+        String rawUri = schemaMigration.uri("s", "d");
+        StringBuilder union = new StringBuilder();
+        StringBuilder tailRanges = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            StatsSegment segment = segments.get(i);
+            String from = "from" + i;
+            String to = "to" + i;
+            params.addValue(from, Timestamp.valueOf(segment.getFrom()));
+            params.addValue(to, Timestamp.valueOf(segment.getTo()));
+            if (i > 0) {
+                union.append(" union all ");
+            }
+            if (!segment.isRaw()) {
+                tailRanges.append(tailRanges.length() > 0 ? " or " : "")
+                        .append("(").append(hitTime).append(" >= :").append(from).append(" and ")
+                        .append(hitTime).append(" < :").append(to).append(")");
+            }
+            if (segment.isRaw()) {
+                union.append("select s.app_id, ").append(rawUri).append(" as uri, count(*) as hits from stats s ")
+                        .append(schemaMigration.uriJoin("s", "d")).append(" where ")
+                        .append(hitTime).append(" >= :").append(from).append(" and ")
+                        .append(hitTime).append(" < :").append(to)
+                        .append(filter.and(rawUri, params))
+                        .append(" group by 1, 2");
+            } else {
+                // эндпоинты из фильтра находятся по словарю, корзины читаются по индексу с uri_id впереди
+                union.append("select r.app_id, d.uri, r.hits from stats_rollup r ")
+                        .append("join uris d on d.uri_id = r.uri_id where r.granularity = '")
+                        .append(segment.getGranularity().name())
+                        .append("' and r.bucket_start >= :").append(from)
+                        .append(" and r.bucket_start < :").append(to)
+                        .append(filter.and("d.uri", params));
+            }
+        }
+        if (tailRanges.length() > 0) {
+            union.append(" union all select s.app_id, ").append(rawUri).append(" as uri, count(*) as hits from stats s ")
+                    .append(schemaMigration.uriJoin("s", "d"))
+                    .append(" where s.id_stats > ").append(String.format(ROLLED_UP_ID, RollupBackfill.HITS.getId()))
+                    .append(" and (").append(tailRanges).append(")")
+                    .append(filter.and(rawUri, params))
+                    .append(" group by 1, 2");
+        }
+        // группы собираются по app_id, имя приложения подтягивается только для отобранных строк
+        String sql = "select t.app_id, t.uri, sum(t.hits) as hits from (" + union + ") t "
+                + "group by t.app_id, t.uri "
+                + "order by hits desc, t.app_id, t.uri";
+        if (page.isLimited()) {
+            sql += " limit :limit offset :offset";
+            params.addValue("limit", page.getLimit()).addValue("offset", page.getOffset());
+        }
+        sql = "select a.app, g.uri, g.hits from (" + sql + ") g "
+                + "join applications a on a.app_id = g.app_id "
+                + "order by g.hits desc, g.app_id, g.uri";
+        jdbcTemplate.query(sql, params,
+                rs -> {
+                    consumer.accept(new StatWithHits(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+                });
+    }
+
+    /**
+     * Приближённое число уникальных IP: скетчи корзин и IP из сырых хитов на краях интервала
+     * объединяются в один скетч на пару (приложение, эндпоинт). IP хитов, ещё не свёрнутых в скетчи,
+     * берутся из сырых хитов с id больше last_id свёртки скетчей. Граница читается до запроса и подставляется
+     * числом: с подзапросом общий план подготовленного запроса не знает, что несвёрнутых хитов мало, и читает
+     * индекс по времени за весь интервал. Хит, свёрнутый между чтением границы и запросом, попадёт и в скетч,
+     * и в сырые IP, но повторный IP не меняет скетч.
+     * С limit оценки отбираются кучей из offset + limit элементов, весь набор не сортируется и не хранится.
+     */
+    @Transactional(readOnly = true)
+    public List<StatWithHits> findApproxUniqueHits(List<StatsSegment> segments, List<String> uris,
+                                                   StatsPage page) {
+        UriFilter filter = UriFilter.of(uris);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String hitTime = schemaMigration.hitTime("s");
+        String rawUri = schemaMigration.uri("s", "d");
+        StringBuilder rollupRanges = new StringBuilder();
+        StringBuilder rawRanges = new StringBuilder();
+        Long rolledUpId = null;
+        for (int i = 0; i < segments.size(); i++) {
+            StatsSegment segment = segments.get(i);
+            String from = "from" + i;
+            String to = "to" + i;
+            params.addValue(from, Timestamp.valueOf(segment.getFrom()));
+            params.addValue(to, Timestamp.valueOf(segment.getTo()));
+            if (segment.isRaw()) {
+                rawRanges.append(rawRanges.length() > 0 ? " or " : "")
+                        .append("(").append(hitTime).append(" >= :").append(from).append(" and ")
+                        .append(hitTime).append(" < :").append(to).append(")");
+            } else {
+                rollupRanges.append(rollupRanges.length() > 0 ? " or " : "")
+                        .append("(r.granularity = '").append(segment.getGranularity().name())
+                        .append("' and r.bucket_start >= :").append(from)
+                        .append(" and r.bucket_start < :").append(to).append(")");
+                if (rolledUpId == null) {
+                    rolledUpId = jdbcTemplate.queryForObject(SELECT_ROLLED_UP_ID,
+                            new MapSqlParameterSource("id", RollupBackfill.SKETCHES.getId()), Long.class);
+                }
+                rawRanges.append(rawRanges.length() > 0 ? " or " : "")
+                        .append("(s.id_stats > ").append(rolledUpId)
+                        .append(" and ").append(hitTime).append(" >= :").append(from).append(" and ")
+                        .append(hitTime).append(" < :").append(to).append(")");
+            }
+        }
+        List<String> parts = new ArrayList<>(2);
+        if (rollupRanges.length() > 0) {
+            parts.add("select r.app_id, d.uri, r.ips, null as ip from stats_rollup r "
+                    + "join uris d on d.uri_id = r.uri_id "
+                    + "where (" + rollupRanges + ")" + filter.and("d.uri", params));
+        }
+        if (rawRanges.length() > 0) {
+            parts.add("select s.app_id, " + rawUri + " as uri, null as ips, s.ip from stats s "
+                    + schemaMigration.uriJoin("s", "d") + " "
+                    + "where (" + rawRanges + ")" + filter.and(rawUri, params)
+                    + " group by 1, 2, 4");
+        }
+        if (parts.isEmpty()) {
+            return List.of();
+        }
+        // строки одного эндпоинта идут подряд, поэтому в памяти только скетч текущей пары и отобранные оценки
+        String sql = "select a.app, t.uri, t.ips, t.ip from (" + String.join(" union all ", parts) + ") t "
+                + "join applications a on a.app_id = t.app_id "
+                + "order by a.app, t.uri";
+        TopHits top = new TopHits(page);
+        UriSketch current = new UriSketch();
+        jdbcTemplate.query(sql, params, rs -> {
+            String app = rs.getString("app");
+            String uri = rs.getString("uri");
+            if (!current.is(app, uri)) {
+                current.flushTo(top);
+                current.start(app, uri);
+            }
+            String ip = rs.getString("ip");
+            if (ip != null) {
+                current.add(ip);
+            } else {
+                current.merge(rs.getBytes("ips"));
+            }
+        });
+        current.flushTo(top);
+        return top.toList();
+    }
+
+    private void addToSketches(Map<RollupKey, HyperLogLog> sketches, Long appId, Long uriId, String ip,
+                               LocalDateTime hitTime) {
+        for (RollupGranularity granularity : SKETCH_GRANULARITIES) {
+            RollupKey key = new RollupKey(granularity, granularity.floor(hitTime), appId, uriId);
+            sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(ip);
+        }
+    }
+
+    /**
+     * Объединяет скетчи порции с уже сохранёнными: один раз на корзину за порцию, а не на каждую пачку хитов.
+     * Скетчи пишет только свёртка SKETCHES под блокировкой строки состояния, поэтому строки корзин
+     * читаются без блокировки и параллельное обновление скетча не теряется.
+     */
+    private void mergeSketches(Map<RollupKey, HyperLogLog> sketches) {
+        Map<RollupKey, List<RollupKey>> groups = new TreeMap<>(KEY_ORDER);
+        for (RollupKey key : sketches.keySet()) {
+            RollupKey group = new RollupKey(key.getGranularity(), key.getBucketStart(), key.getAppId(), 0L);
+            groups.computeIfAbsent(group, k -> new ArrayList<>()).add(key);
+        }
+        List<SqlParameterSource> params = new ArrayList<>(sketches.size());
+        groups.forEach((group, keys) -> {
+            MapSqlParameterSource select = new MapSqlParameterSource()
+                    .addValue("granularity", group.getGranularity().name())
+                    .addValue("bucketStart", Timestamp.valueOf(group.getBucketStart()))
+                    .addValue("appId", group.getAppId())
+                    .addValue("uriIds", keys.stream().map(RollupKey::getUriId).collect(Collectors.toList()));
+            Map<Long, byte[]> stored = new HashMap<>();
+            jdbcTemplate.query(SELECT_SKETCHES, select, rs -> {
+                stored.put(rs.getLong("uri_id"), rs.getBytes("ips"));
+            });
+            for (RollupKey key : keys) {
+                HyperLogLog sketch = sketches.get(key);
+                sketch.merge(stored.get(key.getUriId()));
+                params.add(new MapSqlParameterSource()
+                        .addValue("granularity", key.getGranularity().name())
+                        .addValue("bucketStart", Timestamp.valueOf(key.getBucketStart()))
+                        .addValue("appId", key.getAppId())
+                        .addValue("uriId", key.getUriId())
+                        .addValue("ips", sketch.toBytes()));
+            }
+        });
+        jdbcTemplate.batchUpdate(UPSERT_SKETCH, params.toArray(new SqlParameterSource[0]));
+    }
+
+    /**
+     * Оценки, отсортированные по убыванию. С limit хранится куча из offset + limit лучших:
+     * в корне наименьшая из отобранных, она вытесняется, когда приходит большая.
+     */
+    private static class TopHits {
+        private final StatsPage page;
+        private final PriorityQueue<StatWithHits> heap;
+        private final List<StatWithHits> all;
+
+        private TopHits(StatsPage page) {
+            this.page = page;
+            if (page.isLimited()) {
+                int size = page.getOffset() + page.getLimit();
+                this.heap = new PriorityQueue<>(Math.min(size, 1024), HITS_ORDER.reversed());
+                this.all = null;
+            } else {
+                this.heap = null;
+                this.all = new ArrayList<>();
+            }
+        }
+
+        private void add(StatWithHits stat) {
+            if (heap == null) {
+                all.add(stat);
+            } else if (heap.size() < page.getOffset() + page.getLimit()) {
+                heap.add(stat);
+            } else if (HITS_ORDER.compare(stat, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(stat);
+            }
+        }
+
+        private List<StatWithHits> toList() {
+            List<StatWithHits> result = heap == null ? all : new ArrayList<>(heap);
+            result.sort(HITS_ORDER);
+            return heap == null ? result : result.subList(Math.min(page.getOffset(), result.size()), result.size());
+        }
+    }
+
+    private static class UriSketch {
+        private String app;
+        private String uri;
+        private HyperLogLog sketch;
+
+        private boolean is(String app, String uri) {
+            return app.equals(this.app) && uri.equals(this.uri);
+        }
+
+        private void start(String app, String uri) {
+            this.app = app;
+            this.uri = uri;
+            this.sketch = null;
+        }
+
+        private void add(String ip) {
+            if (sketch == null) {
+                sketch = new HyperLogLog();
+            }
+            sketch.add(ip);
+        }
+
+        private void merge(byte[] ips) {
+            if (sketch == null) {
+                sketch = new HyperLogLog();
+            }
+            sketch.merge(ips);
+        }
+
+        private void flushTo(TopHits top) {
+            if (app != null) {
+                top.add(new StatWithHits(app, uri, sketch == null ? 0 : sketch.estimate()));
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class RollupKey {
+        private final RollupGranularity granularity;
+        private final LocalDateTime bucketStart;
+        private final Long appId;
+        private final Long uriId;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Перевод корзин stats_rollup со строковой колонки uri на ссылку uri_id в словарь uris.
+ * Корзин на порядки меньше, чем хитов, поэтому перенос выполняется одной транзакцией при запуске,
+ * а не порциями, как у stats: таблица блокируется от записи, свёртка и запросы ждут окончания переноса.
+ * Несколько экземпляров, запущенных одновременно, ждут блокировку, и перенос выполняет первый из них.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RollupSchemaMigration {
+    private static final String INTERN_URIS = "insert into uris (uri) "
+            + "select distinct r.uri from stats_rollup r "
+            + "where not exists (select 1 from uris d where d.uri = r.uri) "
+            + "order by r.uri "
+            + "on conflict (uri) do nothing";
+    private static final String FILL_URI_IDS = "update stats_rollup r set uri_id = d.uri_id from uris d "
+            + "where d.uri = r.uri and r.uri_id is null";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        if (!hasUriColumn()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("lock table stats_rollup in exclusive mode");
+            if (!hasUriColumn()) {
+                return;
+            }
+            jdbcTemplate.update(INTERN_URIS);
+            int updated = jdbcTemplate.update(FILL_URI_IDS);
+            jdbcTemplate.execute("alter table stats_rollup drop constraint pk_stats_rollup");
+            jdbcTemplate.execute("alter table stats_rollup "
+                    + "add constraint pk_stats_rollup primary key (granularity, bucket_start, app_id, uri_id)");
+            jdbcTemplate.execute("alter table stats_rollup add constraint fk_rollup_uri "
+                    + "foreign key (uri_id) references uris (uri_id)");
+            jdbcTemplate.execute("drop index if exists idx_stats_rollup_uri");
+            jdbcTemplate.execute("alter table stats_rollup drop column uri");
+            log.info("Корзины статистики переведены на словарь uris: {} строк", updated);
+        });
+    }
+
+    private boolean hasUriColumn() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from information_schema.columns "
+                        + "where table_schema = current_schema() and table_name = 'stats_rollup' "
+                        + "and column_name = 'uri')",
+                Boolean.class));
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.explore_with_me.dto.StatWithHits;
+import ru.practicum.explore_with_me.dto.StatsPage;
+import ru.practicum.explore_with_me.dto.StatsRequestDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class StatJdbcRepository {
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_STAT = "insert into stats (app_id, uri_id, ip, hit_time) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final StatsSchemaMigration schemaMigration;
+
+    /**
+     * Номер транзакции выдаётся до id хитов: фоновая свёртка ждёт завершения всех транзакций,
+     * которые могли получить id ниже её границы, см. {@link RollupRepository}.
+     */
+    public void saveAll(List<StatsRequestDto> stats, Map<String, Long> appIds, Map<String, Long> uriIds) {
+        jdbcTemplate.queryForObject("select txid_current()", Long.class);
+        jdbcTemplate.batchUpdate(INSERT_STAT, stats, BATCH_SIZE, (ps, stat) -> {
+            ps.setLong(1, appIds.get(stat.getApp()));
+            ps.setLong(2, uriIds.get(stat.getUri()));
+            ps.setString(3, stat.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(stat.getTimestamp()));
+        });
+    }
+
+    /**
+     * Точное число уникальных IP построчно: в транзакции строки читаются курсором порциями по fetch size.
+     * С limit база оставляет только верхние группы и не сортирует весь набор.
+     * После переноса эндпоинтов в словарь группы собираются по uri_id, а строки эндпоинтов
+     * подтягиваются только для отобранных групп.
+     */
+    public void streamUniqueHits(LocalDateTime start, LocalDateTime end, List<String> uris, StatsPage page,
+                                 Consumer<StatWithHits> consumer) {
+        UriFilter filter = UriFilter.of(uris);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        String hitTime = schemaMigration.hitTime("s");
+        boolean uriIds = schemaMigration.isUriMigrated();
+        StringBuilder sql = new StringBuilder("select s.app_id, ");
+        if (uriIds) {
+            sql.append("s.uri_id as uri_key, count(distinct s.ip) as hits from stats s ")
+                    .append("where ").append(hitTime).append(" between :start and :end");
+            if (!filter.isEmpty()) {
+                sql.append(" and s.uri_id in (select d.uri_id from uris d where ")
+                        .append(filter.condition("d.uri", params)).append(")");
+            }
+        } else {
+            String uri = schemaMigration.uri("s", "d");
+            sql.append(uri).append(" as uri_key, count(distinct s.ip) as hits from stats s ")
+                    .append(schemaMigration.uriJoin("s", "d"))
+                    .append(" where ").append(hitTime).append(" between :start and :end")
+                    .append(filter.and(uri, params));
+        }
+        sql.append(" group by 1, 2 order by hits desc, 1, 2");
+        if (page.isLimited()) {
+            sql.append(" limit :limit offset :offset");
+            params.addValue("limit", page.getLimit()).addValue("offset", page.getOffset());
+        }
+        sql.insert(0, "select a.app, " + (uriIds ? "d.uri" : "g.uri_key") + " as uri, g.hits from (")
+                .append(") g join applications a on a.app_id = g.app_id ")
+                .append(uriIds ? "join uris d on d.uri_id = g.uri_key " : "")
+                .append("order by g.hits desc, g.app_id, g.uri_key");
+        RowCallbackHandler handler = rs -> {
+            consumer.accept(new StatWithHits(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        };
+        namedJdbcTemplate.query(sql.toString(), params, handler);
+    }
+}
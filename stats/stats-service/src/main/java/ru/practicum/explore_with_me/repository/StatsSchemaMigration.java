@@ -0,0 +1,244 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Перенос времени хита из строковой колонки timestamp в колонку hit_time типа timestamp
+ * и эндпоинта из колонки uri в ссылку uri_id на словарь uris.
+ * Новые хиты сразу пишутся в новые колонки, старые строки заполняются порциями по диапазонам id:
+ * каждая порция — отдельная короткая транзакция, поэтому таблица не блокируется и запись хитов не останавливается.
+ * Пока перенос идёт, запросы читают coalesce из новой и старой колонки.
+ * Прогресс переноса хранится в таблице stats_schema_migration и переживает перезапуск.
+ * Старые колонки удаляются отдельным шагом, только с stats.migration.drop-legacy-columns=true: флаг включается,
+ * когда все экземпляры сервиса пишут новые колонки. Тогда экземпляр с флагом назначает время удаления,
+ * все экземпляры на очередном запуске задачи перестают читать старую колонку, а по наступлении времени
+ * колонка удаляется.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatsSchemaMigration {
+    private static final String LEGACY_HIT_TIME = "coalesce(%1$s.hit_time, cast(%1$s.timestamp as timestamp))";
+    private static final String HIT_TIME = "%s.hit_time";
+
+    private static final String BACKFILL_CHUNK = "update stats set hit_time = cast(timestamp as timestamp) "
+            + "where id_stats > ? and id_stats <= ? and hit_time is null";
+    private static final String HIT_TIME_MIGRATION = "hit_time";
+    private static final String URI_ID_MIGRATION = "uri_id";
+
+    private static final String INSERT_PROGRESS = "insert into stats_schema_migration (name, last_id) "
+            + "select ?, coalesce(min(id_stats), 1) - 1 from stats "
+            + "on conflict do nothing";
+    private static final String SELECT_PROGRESS = "select last_id, drop_after, drop_after <= now() as drop_due "
+            + "from stats_schema_migration where name = ?";
+    private static final String UPDATE_PROGRESS = "update stats_schema_migration set last_id = ? "
+            + "where name = ? and last_id < ?";
+    private static final String SCHEDULE_DROP = "update stats_schema_migration "
+            + "set drop_after = now() + ? * interval '1 millisecond' where name = ? and drop_after is null";
+
+    private static final String LEGACY_URI = "coalesce(%1$s.uri, %2$s.uri)";
+    private static final String LEGACY_URI_JOIN = "left join uris %2$s on %2$s.uri_id = %1$s.uri_id";
+    private static final String URI = "%2$s.uri";
+    private static final String URI_JOIN = "join uris %2$s on %2$s.uri_id = %1$s.uri_id";
+    private static final String LEGACY_URI_ID = "coalesce(%1$s.uri_id, %2$s.uri_id)";
+    private static final String LEGACY_URI_ID_JOIN = "left join uris %2$s on %2$s.uri = %1$s.uri";
+    private static final String URI_ID = "%1$s.uri_id";
+
+    private static final String INTERN_URI_CHUNK = "insert into uris (uri) "
+            + "select distinct s.uri from stats s where s.id_stats > ? and s.id_stats <= ? and s.uri_id is null "
+            + "and not exists (select 1 from uris d where d.uri = s.uri) "
+            + "order by s.uri "
+            + "on conflict (uri) do nothing";
+    private static final String URI_BACKFILL_CHUNK = "update stats s set uri_id = d.uri_id from uris d "
+            + "where d.uri = s.uri and s.id_stats > ? and s.id_stats <= ? and s.uri_id is null";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean legacyTimestamp;
+    private volatile boolean legacyUri;
+    private boolean partitioned;
+
+    @Value("${stats.migration.chunk:10000}")
+    private long chunkSize;
+    @Value("${stats.migration.interval-ms:10000}")
+    private long intervalMs;
+    @Value("${stats.migration.drop-legacy-columns:false}")
+    private boolean dropLegacyColumns;
+
+    @PostConstruct
+    public void init() {
+        partitioned = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from pg_partitioned_table where partrelid = to_regclass('stats'))",
+                Boolean.class));
+        legacyUri = hasColumn("uri");
+        createIndexes();
+        if (legacyUri) {
+            jdbcTemplate.execute("alter table stats alter column uri drop not null");
+            jdbcTemplate.update(INSERT_PROGRESS, URI_ID_MIGRATION);
+            log.info("Найдена колонка uri, перенос эндпоинтов в словарь uris");
+        }
+        legacyTimestamp = hasColumn("timestamp");
+        if (!legacyTimestamp) {
+            return;
+        }
+        jdbcTemplate.execute("alter table stats alter column timestamp drop not null");
+        jdbcTemplate.update(INSERT_PROGRESS, HIT_TIME_MIGRATION);
+        log.info("Найдена строковая колонка timestamp, перенос в hit_time");
+    }
+
+    /**
+     * Индексы секционированной таблицы создаются на пустых секциях при первом запуске,
+     * а на старой несекционированной таблице строятся concurrently, чтобы не блокировать запись хитов.
+     */
+    private void createIndexes() {
+        String create = partitioned ? "create index if not exists " : "create index concurrently if not exists ";
+        if (legacyUri) {
+            jdbcTemplate.execute(create + "idx_stats_uri_hit_time on stats (uri, hit_time)");
+        }
+        jdbcTemplate.execute(create + "idx_stats_uri_id_hit_time on stats (uri_id, hit_time)");
+        jdbcTemplate.execute(create + "idx_stats_hit_time on stats (hit_time)");
+    }
+
+    private boolean hasColumn(String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from information_schema.columns "
+                        + "where table_schema = current_schema() and table_name = 'stats' and column_name = ?)",
+                Boolean.class, column));
+    }
+
+    /**
+     * Выражение времени хита для таблицы stats с указанным псевдонимом.
+     */
+    public String hitTime(String alias) {
+        return String.format(legacyTimestamp ? LEGACY_HIT_TIME : HIT_TIME, alias);
+    }
+
+    /**
+     * Выражение эндпоинта хита для таблицы stats с псевдонимом alias; словарь uris присоединяется
+     * через uriJoin с псевдонимом dictionaryAlias.
+     */
+    public String uri(String alias, String dictionaryAlias) {
+        return String.format(legacyUri ? LEGACY_URI : URI, alias, dictionaryAlias);
+    }
+
+    public String uriJoin(String alias, String dictionaryAlias) {
+        return String.format(legacyUri ? LEGACY_URI_JOIN : URI_JOIN, alias, dictionaryAlias);
+    }
+
+    /**
+     * Выражение id эндпоинта хита для таблицы stats с псевдонимом alias; для строк, ещё не перенесённых
+     * в словарь, id берётся из словаря uris, присоединённого через uriIdJoin с псевдонимом dictionaryAlias.
+     * Эндпоинты таких строк должны быть заранее добавлены в словарь через internUris.
+     */
+    public String uriId(String alias, String dictionaryAlias) {
+        return String.format(legacyUri ? LEGACY_URI_ID : URI_ID, alias, dictionaryAlias);
+    }
+
+    public String uriIdJoin(String alias, String dictionaryAlias) {
+        return legacyUri ? String.format(LEGACY_URI_ID_JOIN, alias, dictionaryAlias) : "";
+    }
+
+    /**
+     * Добавляет в словарь эндпоинты хитов с id из (fromId, toId], ещё не перенесённых в словарь.
+     */
+    public void internUris(long fromId, long toId) {
+        if (legacyUri) {
+            jdbcTemplate.update(INTERN_URI_CHUNK, fromId, toId);
+        }
+    }
+
+    public boolean isMigrated() {
+        return !legacyTimestamp;
+    }
+
+    public boolean isUriMigrated() {
+        return !legacyUri;
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.migration.interval-ms:10000}")
+    public void backfillHitTime() {
+        legacyTimestamp = migrate(HIT_TIME_MIGRATION, "timestamp", List.of(BACKFILL_CHUNK),
+                () -> legacyTimestamp = false, this::dropLegacyTimestamp);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.migration.interval-ms:10000}")
+    public void backfillUriIds() {
+        legacyUri = migrate(URI_ID_MIGRATION, "uri", List.of(INTERN_URI_CHUNK, URI_BACKFILL_CHUNK),
+                () -> legacyUri = false, this::dropLegacyUri);
+    }
+
+    /**
+     * Очередной шаг переноса колонки: порции строк с id после сохранённого прогресса до текущего максимума,
+     * затем, если включено удаление старых колонок, назначение или выполнение удаления.
+     *
+     * @return true, если запросы ещё читают старую колонку
+     */
+    private boolean migrate(String name, String legacyColumn, List<String> chunkUpdates, Runnable stopReading,
+                            Runnable dropColumn) {
+        if (!hasColumn(legacyColumn)) {
+            return false;
+        }
+        Map<String, Object> progress = jdbcTemplate.queryForMap(SELECT_PROGRESS, name);
+        boolean dropScheduled = progress.get("drop_after") != null;
+        if (dropScheduled) {
+            // удаление назначено: все экземпляры пишут новую колонку, старая больше не читается
+            stopReading.run();
+            log.debug("Запросы статистики не читают колонку {}", legacyColumn);
+        }
+        long lastId = ((Number) progress.get("last_id")).longValue();
+        // строки без новой колонки могли записать экземпляры сервиса, ещё не обновлённые до новой версии
+        Long maxId = jdbcTemplate.queryForObject("select max(id_stats) from stats", Long.class);
+        while (maxId != null && lastId < maxId) {
+            long chunkEnd = Math.min(lastId + chunkSize, maxId);
+            int updated = 0;
+            for (String chunkUpdate : chunkUpdates) {
+                updated = jdbcTemplate.update(chunkUpdate, lastId, chunkEnd);
+            }
+            jdbcTemplate.update(UPDATE_PROGRESS, chunkEnd, name, chunkEnd);
+            log.debug("Перенос {}: обновлено {} строк с id до {}", name, updated, chunkEnd);
+            lastId = chunkEnd;
+        }
+        if (dropLegacyColumns && !dropScheduled) {
+            if (jdbcTemplate.update(SCHEDULE_DROP, 3 * intervalMs, name) > 0) {
+                log.info("Назначено удаление колонки {} через {} мс", legacyColumn, 3 * intervalMs);
+            }
+        } else if (dropLegacyColumns && Boolean.TRUE.equals(progress.get("drop_due"))) {
+            dropColumn.run();
+        }
+        return !dropScheduled;
+    }
+
+    private void dropLegacyUri() {
+        jdbcTemplate.execute("alter table stats drop constraint if exists chk_stats_uri_id");
+        jdbcTemplate.execute("alter table stats add constraint chk_stats_uri_id check (uri_id is not null) not valid");
+        jdbcTemplate.execute("alter table stats validate constraint chk_stats_uri_id");
+        jdbcTemplate.execute("alter table stats alter column uri_id set not null");
+        jdbcTemplate.execute("alter table stats drop constraint chk_stats_uri_id");
+        jdbcTemplate.execute("alter table stats drop column if exists uri");
+        log.info("Перенос эндпоинтов в словарь uris завершён, колонка uri удалена");
+    }
+
+    private void dropLegacyTimestamp() {
+        // ограничение not valid ставится без блокировки записи, а после проверки set not null не сканирует таблицу
+        jdbcTemplate.execute("alter table stats drop constraint if exists chk_stats_hit_time");
+        jdbcTemplate.execute("alter table stats add constraint chk_stats_hit_time check (hit_time is not null) not valid");
+        jdbcTemplate.execute("alter table stats validate constraint chk_stats_hit_time");
+        jdbcTemplate.execute("alter table stats alter column hit_time set not null");
+        jdbcTemplate.execute("alter table stats drop constraint chk_stats_hit_time");
+        jdbcTemplate.execute("alter table stats drop column if exists timestamp");
+        log.info("Перенос времени хитов в hit_time завершён, колонка timestamp удалена");
+    }
+}
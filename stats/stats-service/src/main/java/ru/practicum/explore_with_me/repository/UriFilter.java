@@ -0,0 +1,63 @@
+package ru.practicum.explore_with_me.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Условие на эндпоинты из параметра uris. Значение, оканчивающееся на *, задаёт префикс: /events/* выбирает
+ * все эндпоинты, начинающиеся с /events/. Префикс проверяется через like, поэтому по словарю uris
+ * выбирается диапазоном индекса text_pattern_ops.
+ */
+final class UriFilter {
+    private static final String WILDCARD = "*";
+
+    private final List<String> uris = new ArrayList<>();
+    private final List<String> prefixes = new ArrayList<>();
+
+    private UriFilter(List<String> values) {
+        if (values == null) {
+            return;
+        }
+        for (String value : values) {
+            if (value.endsWith(WILDCARD)) {
+                prefixes.add(value.substring(0, value.length() - WILDCARD.length()));
+            } else {
+                uris.add(value);
+            }
+        }
+    }
+
+    static UriFilter of(List<String> values) {
+        return new UriFilter(values);
+    }
+
+    boolean isEmpty() {
+        return uris.isEmpty() && prefixes.isEmpty();
+    }
+
+    /**
+     * Условие для колонки или выражения с эндпоинтом, начинающееся с and; пустая строка, если фильтра нет.
+     */
+    String and(String uri, MapSqlParameterSource params) {
+        return isEmpty() ? "" : " and " + condition(uri, params);
+    }
+
+    String condition(String uri, MapSqlParameterSource params) {
+        List<String> conditions = new ArrayList<>();
+        if (!uris.isEmpty()) {
+            params.addValue("uris", uris);
+            conditions.add(uri + " in (:uris)");
+        }
+        for (int i = 0; i < prefixes.size(); i++) {
+            params.addValue("uriPrefix" + i, escapeLike(prefixes.get(i)) + "%");
+            conditions.add(uri + " like :uriPrefix" + i);
+        }
+        return conditions.size() == 1 ? conditions.get(0) : "(" + String.join(" or ", conditions) + ")";
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.explore_with_me.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class UriRepository {
+    private static final String SELECT_IDS = "select uri_id, uri from uris where uri in (:uris)";
+    private static final String INSERT_URI = "insert into uris (uri) values (:uri) on conflict (uri) do nothing";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<String, Long> findIds(Collection<String> uris) {
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query(SELECT_IDS, new MapSqlParameterSource("uris", uris), rs -> {
+            ids.put(rs.getString("uri"), rs.getLong("uri_id"));
+        });
+        return ids;
+    }
+
+    /**
+     * Добавляет эндпоинты в словарь. Строки вставляются в одном порядке, чтобы параллельные пачки
+     * не взаимоблокировались на уникальном индексе.
+     */
+    public void insertIfAbsent(Collection<String> uris) {
+        List<SqlParameterSource> params = uris.stream()
+                .sorted()
+                .map(uri -> new MapSqlParameterSource("uri", uri))
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(INSERT_URI, params.toArray(new SqlParameterSource[0]));
+    }
+}
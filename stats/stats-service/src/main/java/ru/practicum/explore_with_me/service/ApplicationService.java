@@ -4,23 +4,40 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.practicum.explore_with_me.model.Application;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.practicum.explore_with_me.repository.ApplicationRepository;
 
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ApplicationService {
     private final ApplicationRepository applicationRepository;
+    private final Map<String, Long> appIds = new ConcurrentHashMap<>();
 
-    public Optional<Application> getByName(String appMame) {
-        return applicationRepository.findByApp(appMame);
+    public Long getIdByName(String appName) {
+        Long id = appIds.get(appName);
+        if (id != null) {
+            return id;
+        }
+        boolean inserted = applicationRepository.insertIfAbsent(appName) > 0;
+        Long appId = applicationRepository.findByApp(appName)
+                .map(Application::getId)
+                .orElseThrow(() -> new IllegalStateException("Не найдено приложение " + appName));
+        if (inserted && TransactionSynchronizationManager.isSynchronizationActive()) {
+            log.info("Выполнено сохранение записи о новом приложении {}.", appName);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appIds.putIfAbsent(appName, appId);
+                }
+            });
+        } else {
+            appIds.putIfAbsent(appName, appId);
+        }
+        return appId;
     }
-
-    public Application save(Application application) {
-        Application app = applicationRepository.save(application);
-        log.info("Выполнено сохранение записи о новом приложении {}.", application);
-        return app;
-    }
-}
\ No newline at end of file
+}
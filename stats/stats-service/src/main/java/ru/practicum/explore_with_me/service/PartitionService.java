@@ -0,0 +1,135 @@
+package ru.practicum.explore_with_me.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.explore_with_me.model.RollupGranularity;
+import ru.practicum.explore_with_me.repository.PartitionRepository;
+import ru.practicum.explore_with_me.repository.StatsSchemaMigration;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+/**
+ * Помесячные секции таблицы stats: секции создаются заранее, а секции старше срока хранения удаляются целиком.
+ * Хиты вне созданных секций (например, с давно прошедшим временем) попадают в секцию по умолчанию,
+ * из которой устаревшие строки удаляются порциями. Если хиты месяца уже лежат в секции по умолчанию,
+ * они переносятся в новую секцию. Корзины статистики удаляются по своим срокам хранения, см. {@link RollupRetention}.
+ * Старая несекционированная таблица stats не преобразуется: для этого её нужно переписать целиком,
+ * поэтому она только очищается порциями.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PartitionService {
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'stats_p'yyyy_MM");
+    private static final int DELETE_CHUNK = 10000;
+
+    private final PartitionRepository partitionRepository;
+    private final StatsSchemaMigration schemaMigration;
+    private final RollupRetention rollupRetention;
+
+    @Value("${stats.retention.months:24}")
+    private int retentionMonths;
+    @Value("${stats.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @PostConstruct
+    public void init() {
+        if (!schemaMigration.isPartitioned()) {
+            log.warn("Таблица stats без секций: устаревшие хиты удаляются порциями, секции не создаются");
+            return;
+        }
+        partitionRepository.createDefaultPartition();
+        createPartitions();
+    }
+
+    @Scheduled(initialDelayString = "${stats.partitions.interval-ms:3600000}",
+            fixedDelayString = "${stats.partitions.interval-ms:3600000}")
+    public void maintain() {
+        if (schemaMigration.isPartitioned()) {
+            createPartitions();
+        }
+        if (retentionMonths > 0) {
+            dropExpiredHits(YearMonth.now().minusMonths(retentionMonths).atDay(1));
+        }
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDate before = rollupRetention.horizon(granularity);
+            if (before != null) {
+                int deleted = deleteInChunks(() -> partitionRepository.deleteRollupsBefore(granularity, before,
+                        DELETE_CHUNK));
+                log.info("Удалено {} корзин статистики {} старше {}", deleted, granularity, before);
+            }
+        }
+    }
+
+    private void createPartitions() {
+        Set<String> partitionNames = new HashSet<>(partitionRepository.findPartitionNames());
+        YearMonth current = YearMonth.now();
+        for (YearMonth month = current.minusMonths(1); !month.isAfter(current.plusMonths(monthsAhead));
+             month = month.plusMonths(1)) {
+            String name = month.format(PARTITION_NAME);
+            LocalDate from = month.atDay(1);
+            LocalDate to = month.plusMonths(1).atDay(1);
+            try {
+                if (partitionNames.contains(name)) {
+                    continue;
+                }
+                if (partitionRepository.hasDefaultHits(from, to)) {
+                    int moved = partitionRepository.createPartitionFromDefault(name, from, to);
+                    log.info("Создана секция {}, из секции по умолчанию перенесено {} хитов", name, moved);
+                } else {
+                    partitionRepository.createPartition(name, from, to);
+                }
+            } catch (DataAccessException e) {
+                // повтор при следующем обслуживании, до тех пор хиты месяца копятся в секции по умолчанию
+                log.error("Не удалось создать секцию статистики {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void dropExpiredHits(LocalDate before) {
+        if (!schemaMigration.isPartitioned()) {
+            int deleted = deleteInChunks(() -> partitionRepository.deleteHitsBefore("stats", before, DELETE_CHUNK));
+            log.info("Удалено {} хитов старше {}", deleted, before);
+            return;
+        }
+        for (String name : partitionRepository.findPartitionNames()) {
+            YearMonth month = parseMonth(name);
+            if (month != null && !month.plusMonths(1).atDay(1).isAfter(before)) {
+                partitionRepository.dropPartition(name);
+                log.info("Удалена секция статистики {}", name);
+            }
+        }
+        int deleted = deleteInChunks(
+                () -> partitionRepository.deleteHitsBefore("stats_default", before, DELETE_CHUNK));
+        log.info("Удалено {} хитов старше {} из секции по умолчанию", deleted, before);
+    }
+
+    private YearMonth parseMonth(String partitionName) {
+        try {
+            return YearMonth.parse(partitionName, PARTITION_NAME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private int deleteInChunks(IntSupplier chunkDelete) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = chunkDelete.getAsInt();
+            total += deleted;
+        } while (deleted == DELETE_CHUNK);
+        return total;
+    }
+}
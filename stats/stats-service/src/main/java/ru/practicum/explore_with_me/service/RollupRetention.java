@@ -0,0 +1,52 @@
+package ru.practicum.explore_with_me.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.explore_with_me.model.RollupGranularity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Сроки хранения корзин статистики по размеру корзины: минутные нужны только для краёв недавних интервалов
+ * и хранятся днями, часовые дольше, суточные дольше всех. Нулевой срок означает хранение без ограничения.
+ */
+@Component
+public class RollupRetention {
+    private final int minuteDays;
+    private final int hourDays;
+    private final int dayMonths;
+
+    public RollupRetention(@Value("${stats.retention.rollup-minute-days:7}") int minuteDays,
+                           @Value("${stats.retention.rollup-hour-days:180}") int hourDays,
+                           @Value("${stats.retention.rollup-day-months:120}") int dayMonths) {
+        this.minuteDays = minuteDays;
+        this.hourDays = hourDays;
+        this.dayMonths = dayMonths;
+    }
+
+    /**
+     * Начало хранимых корзин: корзины раньше этой даты удаляются или уже удалены, null — корзины не удаляются.
+     */
+    public LocalDate horizon(RollupGranularity granularity) {
+        LocalDate today = LocalDate.now();
+        switch (granularity) {
+            case MINUTE:
+                return minuteDays > 0 ? today.minusDays(minuteDays) : null;
+            case HOUR:
+                return hourDays > 0 ? today.minusDays(hourDays) : null;
+            case DAY:
+                return dayMonths > 0 ? today.minusMonths(dayMonths).withDayOfMonth(1) : null;
+            default:
+                throw new IllegalArgumentException(String.format("Неизвестный размер корзины = %s", granularity));
+        }
+    }
+
+    /**
+     * Самое раннее время, с которого корзины этого размера можно читать в запросах.
+     */
+    public LocalDateTime readableFrom(RollupGranularity granularity) {
+        LocalDate horizon = horizon(granularity);
+        return horizon == null ? LocalDateTime.MIN : horizon.atStartOfDay();
+    }
+}
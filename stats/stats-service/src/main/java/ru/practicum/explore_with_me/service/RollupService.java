@@ -0,0 +1,90 @@
+package ru.practicum.explore_with_me.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.explore_with_me.dto.StatsSegment;
+import ru.practicum.explore_with_me.model.RollupBackfill;
+import ru.practicum.explore_with_me.model.RollupGranularity;
+import ru.practicum.explore_with_me.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RollupService {
+    private static final List<RollupGranularity> ALL_GRANULARITIES =
+            List.of(RollupGranularity.DAY, RollupGranularity.HOUR, RollupGranularity.MINUTE);
+
+    private static final List<RollupGranularity> SKETCH_GRANULARITIES =
+            List.of(RollupGranularity.DAY, RollupGranularity.HOUR);
+
+    private final RollupRepository rollupRepository;
+    private final RollupRetention rollupRetention;
+
+    @Value("${stats.rollup.chunk:50000}")
+    private long chunk;
+
+    /**
+     * Сворачивает хиты в корзины и скетчи. Записанные до появления корзин хиты сворачиваются порциями
+     * при первых запусках, затем задача сворачивает новые хиты: при записи корзины не обновляются, поэтому
+     * параллельные пачки хитов не ждут друг друга на строках одних и тех же корзин.
+     */
+    @Scheduled(fixedDelayString = "${stats.rollup.interval-ms:10000}")
+    public void rollUp() {
+        for (RollupBackfill backfill : RollupBackfill.values()) {
+            while (rollupRepository.backfillNextChunk(backfill, chunk)) {
+                log.debug("Свёрнута очередная порция хитов: {}", backfill);
+            }
+        }
+    }
+
+    /**
+     * Разбивает полуинтервал [from, to) на отрезки: самые крупные корзины, целиком лежащие внутри,
+     * затем более мелкие по краям, а края меньше минуты читаются из сырых хитов.
+     * План не зависит от хода свёртки: ещё не свёрнутые хиты запросы досчитывают из сырых хитов с id больше last_id.
+     * Корзины берутся только внутри срока хранения своего размера, более ранняя часть интервала делится
+     * на корзины помельче или читается из сырых хитов.
+     */
+    public List<StatsSegment> plan(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, ALL_GRANULARITIES);
+    }
+
+    /**
+     * То же для скетчей уникальных IP: они хранятся только в часовых и суточных корзинах.
+     */
+    public List<StatsSegment> planSketches(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, SKETCH_GRANULARITIES);
+    }
+
+    private List<StatsSegment> plan(LocalDateTime from, LocalDateTime to, List<RollupGranularity> granularities) {
+        List<StatsSegment> segments = new ArrayList<>();
+        split(from, to, granularities, 0, segments);
+        return segments;
+    }
+
+    private void split(LocalDateTime from, LocalDateTime to, List<RollupGranularity> granularities, int level,
+                       List<StatsSegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        for (int i = level; i < granularities.size(); i++) {
+            RollupGranularity granularity = granularities.get(i);
+            LocalDateTime readableFrom = rollupRetention.readableFrom(granularity);
+            LocalDateTime lo = granularity.ceil(from.isBefore(readableFrom) ? readableFrom : from);
+            LocalDateTime hi = granularity.floor(to);
+            if (lo.isBefore(hi)) {
+                split(from, lo, granularities, i + 1, segments);
+                segments.add(new StatsSegment(granularity, lo, hi));
+                split(hi, to, granularities, i + 1, segments);
+                return;
+            }
+        }
+        segments.add(new StatsSegment(null, from, to));
+    }
+}
@@ -3,58 +3,85 @@ package ru.practicum.explore_with_me.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.explore_with_me.dto.StatWithHits;
+import ru.practicum.explore_with_me.dto.StatsPage;
 import ru.practicum.explore_with_me.dto.StatsRequestDto;
 import ru.practicum.explore_with_me.dto.StatsResponseDto;
 import ru.practicum.explore_with_me.mapper.StatMapper;
-import ru.practicum.explore_with_me.model.Application;
-import ru.practicum.explore_with_me.model.Stat;
-import ru.practicum.explore_with_me.repository.StatRepository;
+import ru.practicum.explore_with_me.model.StatsPrecision;
+import ru.practicum.explore_with_me.repository.RollupRepository;
+import ru.practicum.explore_with_me.repository.StatJdbcRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class StatsService {
-    private final StatRepository statRepository;
+    private final StatJdbcRepository statJdbcRepository;
+    private final RollupRepository rollupRepository;
+    private final RollupService rollupService;
     private final ApplicationService applicationService;
+    private final UriService uriService;
     private final StatMapper statMapper;
 
+    @Transactional
     public void save(StatsRequestDto statDto) {
-        Application application = applicationService.getByName(statDto.getApp())
-                .orElseGet(() -> applicationService.save(new Application(statDto.getApp())));
+        saveAll(List.of(statDto));
+    }
 
-        Stat stat = statMapper.mapFromSaveToModel(statDto);
-        stat.setApp(application);
-        statRepository.save(stat);
+    @Transactional
+    public void saveAll(List<StatsRequestDto> statDtos) {
+        Map<String, Long> appIds = new HashMap<>();
+        for (StatsRequestDto statDto : statDtos) {
+            appIds.computeIfAbsent(statDto.getApp(), applicationService::getIdByName);
+        }
+        Map<String, Long> uriIds = uriService.getIds(statDtos.stream()
+                .map(StatsRequestDto::getUri)
+                .collect(Collectors.toSet()));
+        statJdbcRepository.saveAll(statDtos, appIds, uriIds);
+        log.info("Сохранено {} записей статистики для {} приложений", statDtos.size(), appIds.size());
     }
 
-    public List<StatsResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
-        List<StatWithHits> result;
+    @Transactional(readOnly = true)
+    public List<StatsResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                           StatsPrecision precision, StatsPage page) {
+        List<StatsResponseDto> result = new ArrayList<>();
+        streamStats(start, end, uris, unique, precision, page, result::add);
+        return result;
+    }
+
+    /**
+     * Статистика построчно, без сборки всего результата в памяти: точные запросы читаются курсором.
+     * Приближённые уникальные IP собираются из скетчей в памяти по одному на эндпоинт и отдаются после подсчёта.
+     * Окно page применяется после сортировки по убыванию хитов.
+     */
+    @Transactional(readOnly = true)
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            StatsPrecision precision, StatsPage page, Consumer<StatsResponseDto> consumer) {
         if (start.isAfter(end)) {
             throw new IllegalArgumentException("end не должен быть меньше start");
         }
-        if (unique) {
-            if (uris == null || uris.isEmpty()) {
-                log.info("Получение статистики: эндпоинтов нет, unique = true");
-                result = statRepository.findAllUniqueWhenUriIsEmpty(start, end);
-            } else {
-                log.info("Получение статистики: эндпоинты есть, unique = true");
-                result = statRepository.findAllUniqueWhenUriIsNotEmpty(start, end, uris);
-            }
+        Consumer<StatWithHits> mapping = stat -> consumer.accept(statMapper.mapToDtoForView(stat));
+        if (unique && precision == StatsPrecision.APPROX) {
+            log.info("Получение приближённой статистики: эндпоинты ({}), unique = true", uris);
+            rollupRepository.findApproxUniqueHits(rollupService.planSketches(start, end.plusSeconds(1)), uris,
+                            page)
+                    .forEach(mapping);
+        } else if (unique) {
+            log.info("Получение статистики: эндпоинты ({}), unique = true", uris);
+            statJdbcRepository.streamUniqueHits(start, end, uris, page, mapping);
         } else {
-            if (uris == null || uris.isEmpty()) {
-                log.info("Получение статистики: эндпоинтов нет, unique = false");
-                result = statRepository.findAllWhenUriIsEmpty(start, end);
-            } else {
-                log.info("Получение статистики: эндпоинты есть, unique = false");
-                result = statRepository.findAllWhenStarEndUris(start, end, uris);
-            }
+            log.info("Получение статистики по свёрнутым корзинам: эндпоинты ({}), unique = false", uris);
+            // хиты пишутся с точностью до секунды, поэтому [start, end] равен [start, end + 1 c)
+            rollupRepository.streamHits(rollupService.plan(start, end.plusSeconds(1)), uris, page, mapping);
         }
-
-        return result.stream().map(statMapper::mapToDtoForView).collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package ru.practicum.explore_with_me.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.explore_with_me.repository.UriRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь эндпоинтов: хиты ссылаются на эндпоинт по uri_id вместо хранения строки в каждой строке.
+ * Известные id держатся в памяти, новые эндпоинты добавляются в словарь в транзакции записи хитов.
+ */
+@Service
+@Slf4j
+public class UriService {
+    private final UriRepository uriRepository;
+    private final Map<String, Long> uriIds = new ConcurrentHashMap<>();
+    private final int cacheSize;
+
+    public UriService(UriRepository uriRepository, @Value("${stats.uris.cache-size:100000}") int cacheSize) {
+        this.uriRepository = uriRepository;
+        this.cacheSize = cacheSize;
+    }
+
+    public Map<String, Long> getIds(Collection<String> uris) {
+        Map<String, Long> result = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String uri : uris) {
+            Long id = uriIds.get(uri);
+            if (id != null) {
+                result.put(uri, id);
+            } else {
+                missing.add(uri);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        Map<String, Long> loaded = uriRepository.findIds(missing);
+        missing.removeAll(loaded.keySet());
+        if (!missing.isEmpty()) {
+            uriRepository.insertIfAbsent(missing);
+            Map<String, Long> inserted = uriRepository.findIds(missing);
+            if (inserted.size() != missing.size()) {
+                missing.removeAll(inserted.keySet());
+                throw new IllegalStateException("Не найдены эндпоинты в словаре: " + missing);
+            }
+            log.info("В словарь добавлено {} новых эндпоинтов", inserted.size());
+            // id вставленных строк кэшируются только после фиксации транзакции
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        cache(inserted);
+                    }
+                });
+            } else {
+                cache(inserted);
+            }
+            result.putAll(inserted);
+        }
+        cache(loaded);
+        result.putAll(loaded);
+        return result;
+    }
+
+    private void cache(Map<String, Long> ids) {
+        if (uriIds.size() < cacheSize) {
+            uriIds.putAll(ids);
+        }
+    }
+}
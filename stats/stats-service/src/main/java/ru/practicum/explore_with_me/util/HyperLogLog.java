@@ -0,0 +1,168 @@
+package ru.practicum.explore_with_me.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Скетч HyperLogLog для приближённого подсчёта уникальных IP. 2^11 регистров дают стандартную
+ * ошибку 1.04 / sqrt(2048) ≈ 2.3%: примерно в 95% случаев оценка отличается от точного значения
+ * не больше чем на 4.6%. Оценка считается улучшенным оценщиком Эртля (O. Ertl, "New cardinality estimation
+ * algorithms for HyperLogLog sketches", 2017) по гистограмме регистров. Он не смещён во всём диапазоне:
+ * несколько десятков IP считаются практически точно, а на стыке линейного подсчёта и исходной формулы,
+ * около 2.5 * 2^11 значений, ошибка не растёт.
+ * Скетчи объединяются без потери точности: объединение скетчей двух корзин равно скетчу их суммы.
+ * Скетчи с небольшим числом заполненных регистров хранятся в разреженном виде.
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 11;
+    private static final int REGISTERS = 1 << PRECISION;
+    // ранг регистра не больше Long.SIZE - PRECISION + 1
+    private static final int MAX_RANK = Long.SIZE - PRECISION + 1;
+    private static final double ALPHA_INF = 1 / (2 * Math.log(2));
+
+    private static final byte DENSE = 1;
+    private static final byte SPARSE = 2;
+    private static final int SPARSE_ENTRY_SIZE = 3;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    public void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        int[] counts = new int[MAX_RANK + 1];
+        for (byte register : registers) {
+            counts[register]++;
+        }
+        double z = REGISTERS * tau(1 - (double) counts[MAX_RANK] / REGISTERS);
+        for (int rank = MAX_RANK - 1; rank >= 1; rank--) {
+            z = 0.5 * (z + counts[rank]);
+        }
+        z += REGISTERS * sigma((double) counts[0] / REGISTERS);
+        return Math.round(ALPHA_INF * REGISTERS * REGISTERS / z);
+    }
+
+    public byte[] toBytes() {
+        int filled = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                filled++;
+            }
+        }
+        if (filled * SPARSE_ENTRY_SIZE < REGISTERS) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + filled * SPARSE_ENTRY_SIZE).put(SPARSE);
+            for (int i = 0; i < REGISTERS; i++) {
+                if (registers[i] != 0) {
+                    buffer.putShort((short) i).put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+        return ByteBuffer.allocate(1 + REGISTERS).put(DENSE).put(registers).array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.merge(bytes);
+        return sketch;
+    }
+
+    /**
+     * Объединяет скетч с сохранённым в toBytes, не разворачивая его: у разреженного скетча обходятся
+     * только заполненные регистры. Пустой массив и null — пустой скетч.
+     */
+    public void merge(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        if (format == DENSE) {
+            for (int i = 0; i < REGISTERS; i++) {
+                byte register = buffer.get();
+                if (registers[i] < register) {
+                    registers[i] = register;
+                }
+            }
+        } else if (format == SPARSE) {
+            while (buffer.remaining() >= SPARSE_ENTRY_SIZE) {
+                int index = buffer.getShort() & 0xffff;
+                byte register = buffer.get();
+                if (registers[index] < register) {
+                    registers[index] = register;
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Неизвестный формат скетча: " + format);
+        }
+    }
+
+    /**
+     * Поправка на пустые регистры: x + x^2 + 2x^4 + 4x^8 + ..., ряд считается до схождения в double.
+     */
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    /**
+     * Поправка на регистры с максимальным рангом, ряд считается до схождения в double.
+     */
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -6,13 +6,73 @@ create table if not exists applications
     constraint uq_app unique (app)
     );
 
+create table if not exists uris
+(
+    uri_id bigint generated by default as identity not null,
+    uri    varchar(256)                            not null,
+    constraint pk_uri primary key (uri_id)
+    );
+
+create unique index if not exists uq_uri on uris (uri text_pattern_ops);
+
 create table if not exists stats
 (
     id_stats  bigint generated by default as identity not null,
     app_id    bigint,
-    uri       varchar(256)                            not null,
+    uri_id    bigint                                  not null,
     ip        varchar(15)                             not null,
-    timestamp varchar(100)                            not null,
-    constraint pk_stat primary key (id_stats),
+    hit_time  timestamp without time zone             not null,
+    constraint pk_stat primary key (id_stats, hit_time),
     constraint fk_app foreign key (app_id) references applications (app_id)
-    );
\ No newline at end of file
+    ) partition by range (hit_time);
+
+alter table stats add column if not exists hit_time timestamp without time zone;
+alter table stats add column if not exists uri_id bigint;
+
+create table if not exists stats_schema_migration
+(
+    name       varchar(32) not null,
+    last_id    bigint      not null,
+    drop_after timestamp without time zone,
+    constraint pk_stats_schema_migration primary key (name)
+    );
+
+create table if not exists stats_rollup
+(
+    granularity  varchar(10)                 not null,
+    bucket_start timestamp without time zone not null,
+    app_id       bigint                      not null,
+    uri_id       bigint                      not null,
+    hits         bigint                      not null,
+    ips          bytea,
+    constraint pk_stats_rollup primary key (granularity, bucket_start, app_id, uri_id),
+    constraint fk_rollup_app foreign key (app_id) references applications (app_id),
+    constraint fk_rollup_uri foreign key (uri_id) references uris (uri_id)
+    );
+
+alter table stats_rollup add column if not exists ips bytea;
+-- корзины со строковой колонкой uri переводятся на словарь при запуске, см. RollupSchemaMigration
+alter table stats_rollup add column if not exists uri_id bigint;
+
+-- корзины по списку эндпоинтов: в первичном ключе uri_id последний, и без индекса читаются все эндпоинты интервала
+create index if not exists idx_stats_rollup_uri_id on stats_rollup (uri_id, granularity, bucket_start);
+
+create table if not exists stats_rollup_backfill
+(
+    id      integer not null,
+    last_id bigint  not null,
+    to_id   bigint  not null,
+    constraint pk_stats_rollup_backfill primary key (id)
+    );
+
+alter table stats_rollup_backfill add column if not exists next_id bigint;
+alter table stats_rollup_backfill add column if not exists next_xmax bigint;
+
+-- граница свёртки хитов и скетчей сдвигается фоновой задачей, в том числе над хитами, записанными в это время
+insert into stats_rollup_backfill (id, last_id, to_id)
+values (1, 0, 0)
+on conflict do nothing;
+
+insert into stats_rollup_backfill (id, last_id, to_id)
+values (2, 0, 0)
+on conflict do nothing;
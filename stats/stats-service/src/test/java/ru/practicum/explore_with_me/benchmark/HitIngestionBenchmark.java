@@ -0,0 +1,72 @@
+package ru.practicum.explore_with_me.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.practicum.explore_with_me.dto.StatsRequestDto;
+import ru.practicum.explore_with_me.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись 10k хитов по одному, как через /hit, против одной пачки, как через /hit/batch. Результат в хитах
+ * в секунду; разбор HTTP-запросов не входит в замер, при записи по одному он добавляется к каждому хиту.
+ * База задаётся переменной окружения STATS_BENCHMARK_DB_URL, записанные хиты удаляются после замера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HitIngestionBenchmark {
+    private static final String APP = "bench-ingest";
+    private static final int HITS = 10_000;
+
+    private StatsBenchmarkContext context;
+    private StatsService statsService;
+    private List<StatsRequestDto> hits;
+
+    @Setup
+    public void setUp() {
+        context = StatsBenchmarkContext.start();
+        statsService = context.statsService();
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        hits = new ArrayList<>(HITS);
+        for (int i = 0; i < HITS; i++) {
+            hits.add(new StatsRequestDto(null, APP, "/events/" + random.nextInt(500),
+                    "10.0." + random.nextInt(256) + "." + random.nextInt(256), now.minusSeconds(random.nextInt(3600))));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.jdbcTemplate().update("delete from stats "
+                + "where app_id in (select app_id from applications where app = ?)", APP);
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HITS)
+    public void singleHits() {
+        for (StatsRequestDto hit : hits) {
+            statsService.save(hit);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HITS)
+    public void batch() {
+        statsService.saveAll(hits);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HitIngestionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
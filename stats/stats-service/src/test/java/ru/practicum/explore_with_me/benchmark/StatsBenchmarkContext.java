@@ -0,0 +1,101 @@
+package ru.practicum.explore_with_me.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.explore_with_me.MainStatsService;
+import ru.practicum.explore_with_me.dto.StatsRequestDto;
+import ru.practicum.explore_with_me.service.RollupService;
+import ru.practicum.explore_with_me.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Контекст сервиса статистики для бенчмарков: без веб-сервера и с профилем benchmark,
+ * то есть с отдельной базой stats_bench. Хиты приложения записываются один раз и переиспользуются
+ * следующими запусками, пока их число не изменится.
+ */
+public final class StatsBenchmarkContext implements AutoCloseable {
+    private static final int SEED_BATCH = 10_000;
+
+    private final ConfigurableApplicationContext context;
+
+    private StatsBenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static StatsBenchmarkContext start() {
+        return new StatsBenchmarkContext(new SpringApplicationBuilder(MainStatsService.class)
+                .web(WebApplicationType.NONE)
+                .profiles("benchmark")
+                .run());
+    }
+
+    public StatsService statsService() {
+        return context.getBean(StatsService.class);
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    /**
+     * Записывает hits хитов приложения app за последние days суток по uris эндпоинтам и ips адресам
+     * и сворачивает их: первые uris хитов приходятся на разные эндпоинты, остальные на случайные.
+     * Если у приложения уже ровно столько хитов, данные не пересоздаются.
+     */
+    public void seed(String app, int hits, int uris, int ips, int days) {
+        Long existing = jdbcTemplate().queryForObject("select count(*) from stats s "
+                + "join applications a on a.app_id = s.app_id where a.app = ?", Long.class, app);
+        if (existing == null || existing != hits) {
+            jdbcTemplate().update("delete from stats where app_id in (select app_id from applications where app = ?)",
+                    app);
+            jdbcTemplate().update("delete from stats_rollup "
+                    + "where app_id in (select app_id from applications where app = ?)", app);
+            Random random = new Random(42);
+            LocalDateTime end = LocalDateTime.now().withNano(0);
+            int seconds = days * 86_400;
+            List<StatsRequestDto> batch = new ArrayList<>(SEED_BATCH);
+            for (int i = 0; i < hits; i++) {
+                int ip = random.nextInt(ips);
+                int uri = i < uris ? i : random.nextInt(uris);
+                batch.add(new StatsRequestDto(null, app, "/events/" + uri,
+                        "10." + (ip >>> 16 & 0xff) + "." + (ip >>> 8 & 0xff) + "." + (ip & 0xff),
+                        end.minusSeconds(random.nextInt(seconds))));
+                if (batch.size() == SEED_BATCH) {
+                    statsService().saveAll(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                statsService().saveAll(batch);
+            }
+        }
+        rollUp();
+    }
+
+    /**
+     * Сворачивает все записанные хиты: граница свёртки сдвигается со второго запуска.
+     */
+    public void rollUp() {
+        RollupService rollupService = context.getBean(RollupService.class);
+        for (int i = 0; i < 10 && hasPendingHits(); i++) {
+            rollupService.rollUp();
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private boolean hasPendingHits() {
+        Long pending = jdbcTemplate().queryForObject("select count(*) from stats "
+                + "where id_stats > (select min(last_id) from stats_rollup_backfill)", Long.class);
+        return pending == null || pending > 0;
+    }
+}
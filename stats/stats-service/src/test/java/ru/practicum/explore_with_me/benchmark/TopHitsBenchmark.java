@@ -0,0 +1,76 @@
+package ru.practicum.explore_with_me.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.practicum.explore_with_me.dto.StatsPage;
+import ru.practicum.explore_with_me.model.StatsPrecision;
+import ru.practicum.explore_with_me.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Самые посещаемые эндпоинты за 30 суток среди 1M разных эндпоинтов: первые 10 против всего набора групп.
+ * Хиты по свёрнутым корзинам и точные уникальные IP ограничиваются в базе, приближённые уникальные IP
+ * отбираются кучей в памяти. Строки читаются потоком, как в NDJSON-ответе. База задаётся переменной
+ * окружения STATS_BENCHMARK_DB_URL, запуск описан в README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TopHitsBenchmark {
+    private static final String APP = "bench-top";
+    private static final int HITS = 2_000_000;
+    private static final int URIS = 1_000_000;
+    private static final int IPS = 100_000;
+    private static final int DAYS = 30;
+
+    @Param({"HITS", "EXACT_UNIQUE", "APPROX_UNIQUE"})
+    private Query query;
+
+    @Param({"10", "0"})
+    private int limit;
+
+    private StatsBenchmarkContext context;
+    private StatsService statsService;
+    private StatsPage page;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup
+    public void setUp() {
+        context = StatsBenchmarkContext.start();
+        context.seed(APP, HITS, URIS, IPS, DAYS);
+        statsService = context.statsService();
+        page = limit > 0 ? new StatsPage(limit, 0) : StatsPage.ALL;
+        end = LocalDateTime.now().withNano(0);
+        start = end.minusDays(DAYS + 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void topHits(Blackhole blackhole) {
+        statsService.streamStats(start, end, null, query != Query.HITS,
+                query == Query.APPROX_UNIQUE ? StatsPrecision.APPROX : StatsPrecision.EXACT, page, blackhole::consume);
+    }
+
+    public enum Query {
+        HITS,
+        EXACT_UNIQUE,
+        APPROX_UNIQUE
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TopHitsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package ru.practicum.explore_with_me.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.practicum.explore_with_me.dto.StatsPage;
+import ru.practicum.explore_with_me.dto.StatsResponseDto;
+import ru.practicum.explore_with_me.model.StatsPrecision;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Уникальные IP за 30 суток по 1M хитов: точный count(distinct) по сырым хитам против объединения скетчей
+ * суточных и часовых корзин. При подготовке печатается наибольшая относительная ошибка приближённых значений.
+ * База задаётся переменной окружения STATS_BENCHMARK_DB_URL, запуск описан в README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UniqueHitsBenchmark {
+    private static final String APP = "bench-unique";
+    private static final int HITS = 1_000_000;
+    private static final int URIS = 1_000;
+    private static final int IPS = 100_000;
+    private static final int DAYS = 30;
+
+    @Param({"EXACT", "APPROX"})
+    private StatsPrecision precision;
+
+    @Param({"10", "1000"})
+    private int uriCount;
+
+    private StatsBenchmarkContext context;
+    private List<String> uris;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup
+    public void setUp() {
+        context = StatsBenchmarkContext.start();
+        context.seed(APP, HITS, URIS, IPS, DAYS);
+        uris = IntStream.range(0, uriCount).mapToObj(i -> "/events/" + i).collect(Collectors.toList());
+        end = LocalDateTime.now().withNano(0);
+        start = end.minusDays(DAYS + 1);
+        if (precision == StatsPrecision.APPROX) {
+            Map<String, Integer> exact = context.statsService()
+                    .getStats(start, end, uris, true, StatsPrecision.EXACT, StatsPage.ALL).stream()
+                    .collect(Collectors.toMap(StatsResponseDto::getUri, StatsResponseDto::getHits));
+            double maxError = 0;
+            for (StatsResponseDto stat : getStats()) {
+                int expected = exact.get(stat.getUri());
+                maxError = Math.max(maxError, Math.abs(stat.getHits() - expected) / (double) expected);
+            }
+            System.out.printf("%nЭндпоинтов %d: наибольшая относительная ошибка %.2f%%%n", uriCount, maxError * 100);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<StatsResponseDto> uniqueHits() {
+        return getStats();
+    }
+
+    private List<StatsResponseDto> getStats() {
+        return context.statsService().getStats(start, end, uris, true, precision, StatsPage.ALL);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UniqueHitsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+package ru.practicum.explore_with_me.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+    private static final double STANDARD_ERROR = 1.04 / Math.sqrt(2048);
+    private static final byte DENSE = 1;
+    private static final byte SPARSE = 2;
+
+    @Test
+    void smallSetsAreCountedAlmostExactly() {
+        for (int cardinality = 1; cardinality <= 64; cardinality++) {
+            assertThat(sketch(0, cardinality).estimate()).isCloseTo(cardinality, within(1L));
+        }
+    }
+
+    @Test
+    void estimateStaysWithinThreeStandardErrors() {
+        for (int cardinality : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            long estimate = sketch(0, cardinality).estimate();
+
+            assertThat(relativeError(estimate, cardinality)).as("%d IP", cardinality)
+                    .isLessThan(3 * STANDARD_ERROR);
+        }
+    }
+
+    @Test
+    void mostEstimatesStayWithinTwoStandardErrors() {
+        int sets = 200;
+        // 5000 — стык линейного подсчёта и исходной формулы, где оценка классического HyperLogLog смещена
+        for (int cardinality : new int[]{1_000, 5_000, 20_000}) {
+            int withinBound = 0;
+            for (int i = 0; i < sets; i++) {
+                long estimate = sketch(i * cardinality, cardinality).estimate();
+                if (relativeError(estimate, cardinality) <= 2 * STANDARD_ERROR) {
+                    withinBound++;
+                }
+            }
+
+            // документированная граница: около 95% оценок отличаются от точного значения не больше чем на 4.6%.
+            // Из 200 оценок в среднем 191 внутри 2σ, биномиальное отклонение около 3 оценок,
+            // поэтому порог 93% (186) оставляет запас в полтора отклонения
+            assertThat(withinBound).as("%d IP", cardinality).isGreaterThanOrEqualTo(sets * 93 / 100);
+        }
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog left = sketch(0, 30_000);
+        left.merge(sketch(20_000, 30_000));
+
+        assertThat(left.toBytes()).isEqualTo(sketch(0, 50_000).toBytes());
+    }
+
+    @Test
+    void smallSketchIsStoredSparse() {
+        HyperLogLog sketch = sketch(0, 100);
+
+        byte[] bytes = sketch.toBytes();
+
+        assertThat(bytes[0]).isEqualTo(SPARSE);
+        assertThat(bytes.length).isLessThan(1 + 2048);
+        assertThat(HyperLogLog.fromBytes(bytes).toBytes()).isEqualTo(bytes);
+        assertThat(HyperLogLog.fromBytes(bytes).estimate()).isEqualTo(sketch.estimate());
+    }
+
+    @Test
+    void sparseSketchesMergeIntoDense() {
+        byte[] left = sketch(0, 500).toBytes();
+        byte[] right = sketch(500, 500).toBytes();
+        assertThat(left[0]).isEqualTo(SPARSE);
+        assertThat(right[0]).isEqualTo(SPARSE);
+
+        HyperLogLog merged = HyperLogLog.fromBytes(left);
+        merged.merge(HyperLogLog.fromBytes(right));
+        byte[] bytes = merged.toBytes();
+
+        assertThat(bytes[0]).isEqualTo(DENSE);
+        assertThat(bytes).hasSize(1 + 2048);
+        assertThat(bytes).isEqualTo(sketch(0, 1_000).toBytes());
+        assertThat(HyperLogLog.fromBytes(bytes).estimate()).isEqualTo(merged.estimate());
+    }
+
+    @Test
+    void sparseSketchMergesIntoDense() {
+        HyperLogLog dense = sketch(0, 10_000);
+        assertThat(dense.toBytes()[0]).isEqualTo(DENSE);
+
+        dense.merge(HyperLogLog.fromBytes(sketch(9_900, 200).toBytes()));
+
+        assertThat(dense.toBytes()).isEqualTo(sketch(0, 10_100).toBytes());
+    }
+
+    @Test
+    void serializedSketchMergesWithoutDecoding() {
+        for (int count : new int[]{100, 10_000}) {
+            HyperLogLog decoded = sketch(0, 5_000);
+            decoded.merge(HyperLogLog.fromBytes(sketch(4_000, count).toBytes()));
+            HyperLogLog serialized = sketch(0, 5_000);
+
+            serialized.merge(sketch(4_000, count).toBytes());
+
+            assertThat(serialized.toBytes()).as("%d IP", count).isEqualTo(decoded.toBytes());
+        }
+    }
+
+    @Test
+    void emptySketchMergesAsNoOp() {
+        HyperLogLog sketch = sketch(0, 1_000);
+        byte[] before = sketch.toBytes();
+
+        sketch.merge(HyperLogLog.fromBytes(null));
+        sketch.merge((byte[]) null);
+
+        assertThat(sketch.toBytes()).isEqualTo(before);
+        assertThat(HyperLogLog.fromBytes(new byte[0]).estimate()).isZero();
+    }
+
+    private static HyperLogLog sketch(int from, int count) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < from + count; i++) {
+            sketch.add(ip(i));
+        }
+        return sketch;
+    }
+
+    private static String ip(int i) {
+        return (10 + (i >>> 24)) + "." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+    }
+
+    private static double relativeError(long estimate, int cardinality) {
+        return Math.abs(estimate - cardinality) / (double) cardinality;
+    }
+}